@@ -0,0 +1,89 @@
+package com.glitchcog.fontificator.benchmark;
+
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Date;
+
+import com.glitchcog.fontificator.bot.Message;
+import com.glitchcog.fontificator.bot.MessageType;
+import com.glitchcog.fontificator.bot.TwitchPrivmsg;
+import com.glitchcog.fontificator.config.ConfigEmoji;
+import com.glitchcog.fontificator.config.ConfigMessage;
+import com.glitchcog.fontificator.config.FontType;
+import com.glitchcog.fontificator.config.FontificatorProperties;
+import com.glitchcog.fontificator.config.RenderSnapshot;
+import com.glitchcog.fontificator.emoji.EmojiManager;
+import com.glitchcog.fontificator.sprite.SpriteFont;
+
+/**
+ * The default configuration and the sprite font it loads, set up the way the chat panel sets them up before it measures
+ * and draws messages, without opening any windows
+ *
+ * @author Matt Yanos
+ */
+class ChatFixture
+{
+    private final FontificatorProperties props;
+
+    private final SpriteFont font;
+
+    private final EmojiManager emojiManager;
+
+    private final Graphics2D graphics;
+
+    ChatFixture(FontType fontType)
+    {
+        props = new FontificatorProperties();
+        props.loadDefaultValues(true);
+        props.getFontConfig().setFontType(fontType);
+
+        font = new SpriteFont(props.getFontConfig());
+        font.updateForConfigChange();
+        font.checkLayoutVersion(new RenderSnapshot(props.getFontConfig(), props.getChatConfig(), props.getColorConfig(), props.getMessageConfig(), props.getEmojiConfig()));
+
+        emojiManager = new EmojiManager();
+        graphics = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB).createGraphics();
+    }
+
+    /**
+     * Create a message posted by the same user at the same moment each time, so only the content differs
+     *
+     * @param content
+     * @return message
+     */
+    Message createMessage(String content)
+    {
+        return new Message(MessageType.NORMAL, "glitchcog", new Date(0L), content, new TwitchPrivmsg("glitchcog"));
+    }
+
+    FontificatorProperties getProperties()
+    {
+        return props;
+    }
+
+    SpriteFont getFont()
+    {
+        return font;
+    }
+
+    EmojiManager getEmojiManager()
+    {
+        return emojiManager;
+    }
+
+    ConfigMessage getMessageConfig()
+    {
+        return props.getMessageConfig();
+    }
+
+    ConfigEmoji getEmojiConfig()
+    {
+        return props.getEmojiConfig();
+    }
+
+    FontMetrics getFontMetrics()
+    {
+        return graphics.getFontMetrics();
+    }
+}
@@ -0,0 +1,105 @@
+package com.glitchcog.fontificator.benchmark;
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.glitchcog.fontificator.bot.Message;
+import com.glitchcog.fontificator.config.FontType;
+import com.glitchcog.fontificator.sprite.MessageLayout;
+
+/**
+ * Laying out and drawing ordinary chat messages in the default font, both as the fixed width font it is and as though
+ * it were a variable width font, to check whether fixed width fonts would gain anything from a path of their own that
+ * skips looking up the width of each character
+ *
+ * @author Matt Yanos
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class FixedWidthBenchmark
+{
+    private static final String[] WORDS = { "hello", "world", "a", "Kappa", "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "supercalifragilistic", "!" };
+
+    private static final int WORDS_PER_MESSAGE = 30;
+
+    private static final int MESSAGE_COUNT = 64;
+
+    private static final int LINE_WRAP_LENGTH = 380;
+
+    @Param({ "FIXED_WIDTH", "VARIABLE_WIDTH" })
+    public FontType fontType;
+
+    private ChatFixture fixture;
+
+    private FontMetrics fontMetrics;
+
+    private Graphics2D canvas;
+
+    private Message[] messages;
+
+    private int next;
+
+    @Setup
+    public void setUp()
+    {
+        fixture = new ChatFixture(fontType);
+        fontMetrics = fixture.getFontMetrics();
+        canvas = new BufferedImage(400, 2000, BufferedImage.TYPE_INT_RGB).createGraphics();
+
+        Random rand = new Random(1L);
+        messages = new Message[MESSAGE_COUNT];
+        for (int i = 0; i < messages.length; i++)
+        {
+            StringBuilder content = new StringBuilder();
+            for (int w = 0; w < WORDS_PER_MESSAGE; w++)
+            {
+                content.append(WORDS[rand.nextInt(WORDS.length)]).append(' ');
+            }
+            messages[i] = fixture.createMessage(content.toString().trim());
+            messages[i].setCompletelyDrawn();
+            messages[i].getText(fixture.getEmojiManager(), fixture.getMessageConfig(), fixture.getEmojiConfig());
+        }
+    }
+
+    private Message nextMessage()
+    {
+        next = (next + 1) % messages.length;
+        return messages[next];
+    }
+
+    @Benchmark
+    public MessageLayout layout()
+    {
+        Message msg = nextMessage();
+        // Drop the layout stored on the message so it is calculated again every time
+        msg.setLayout(null);
+        return fixture.getFont().getMessageLayout(msg, fontMetrics, fixture.getMessageConfig(), fixture.getEmojiConfig(), fixture.getEmojiManager(), LINE_WRAP_LENGTH);
+    }
+
+    @Benchmark
+    public Object draw()
+    {
+        // The layout stored on the message is reused, so this is only the drawing
+        return fixture.getFont().drawMessage(canvas, fontMetrics, nextMessage(), Color.WHITE, fixture.getMessageConfig(), fixture.getEmojiConfig(), fixture.getEmojiManager(), 0, 0, 0, 2000, LINE_WRAP_LENGTH, false, null, null, false);
+    }
+}
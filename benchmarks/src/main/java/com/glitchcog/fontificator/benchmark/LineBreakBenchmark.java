@@ -0,0 +1,187 @@
+package com.glitchcog.fontificator.benchmark;
+
+import java.awt.FontMetrics;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.glitchcog.fontificator.bot.Message;
+import com.glitchcog.fontificator.config.FontType;
+import com.glitchcog.fontificator.sprite.MessageLayout;
+import com.glitchcog.fontificator.sprite.SpriteFont;
+import com.glitchcog.fontificator.sprite.SpriteText;
+
+/**
+ * Word wrapping a 500 character line of chat spam in a variable width font, comparing the layout the sprite font does
+ * now, which adds up the width of each word once, against the look ahead it used to do, which added up the rest of the
+ * word again for every character in it
+ *
+ * @author Matt Yanos
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LineBreakBenchmark
+{
+    private static final int LINE_LENGTH = 500;
+
+    private static final int LINE_WRAP_LENGTH = 600;
+
+    private static final String WORD_BREAKS = " \n\r\t";
+
+    private static final String LINE_BREAKS = "\n";
+
+    /**
+     * The kinds of spam to wrap
+     */
+    public enum Spam
+    {
+        /**
+         * One word the whole length of the line, which has to be broken in the middle
+         */
+        WORD("A"),
+
+        /**
+         * The same short emote name over and over
+         */
+        EMOTE("Kappa "),
+
+        /**
+         * Long links, each a little shorter than a line
+         */
+        URL("https://www.twitch.tv/glitchcog/clip/ChatGameFontificatorSpam ");
+
+        private final String pattern;
+
+        private Spam(String pattern)
+        {
+            this.pattern = pattern;
+        }
+
+        private String getLine(int length)
+        {
+            StringBuilder line = new StringBuilder(length + pattern.length());
+            while (line.length() < length)
+            {
+                line.append(pattern);
+            }
+            return line.substring(0, length);
+        }
+    }
+
+    @Param
+    public Spam spam;
+
+    private ChatFixture fixture;
+
+    private FontMetrics fontMetrics;
+
+    private Message message;
+
+    @Setup
+    public void setUp()
+    {
+        fixture = new ChatFixture(FontType.VARIABLE_WIDTH);
+        fontMetrics = fixture.getFontMetrics();
+        message = fixture.createMessage(spam.getLine(LINE_LENGTH));
+        message.getText(fixture.getEmojiManager(), fixture.getMessageConfig(), fixture.getEmojiConfig());
+    }
+
+    @Benchmark
+    public MessageLayout layout()
+    {
+        // Drop the layout stored on the message so it is calculated again every time
+        message.setLayout(null);
+        return fixture.getFont().getMessageLayout(message, fontMetrics, fixture.getMessageConfig(), fixture.getEmojiConfig(), fixture.getEmojiManager(), LINE_WRAP_LENGTH);
+    }
+
+    @Benchmark
+    public int lookAheadLayout()
+    {
+        return countLinesLookingAhead(fixture.getFont(), message.getText(fixture.getEmojiManager(), fixture.getMessageConfig(), fixture.getEmojiConfig()), LINE_WRAP_LENGTH);
+    }
+
+    /**
+     * The word wrapping as the sprite font used to do it, measuring from each character to the end of its word to see
+     * whether the rest of the word fits on the line
+     *
+     * @param font
+     * @param text
+     * @param lineWrapLength
+     * @return the number of lines
+     */
+    private int countLinesLookingAhead(SpriteFont font, SpriteText text, int lineWrapLength)
+    {
+        int maxCharWidth = 0;
+        for (int c = 0; c < text.length(); c++)
+        {
+            maxCharWidth = Math.max(maxCharWidth, font.getCharacterWidth(fontMetrics, text, c));
+        }
+        if (maxCharWidth > lineWrapLength)
+        {
+            return 0;
+        }
+
+        int x = 0;
+        int lines = 1;
+        boolean forcedBreak = false;
+
+        for (int ci = 0; ci < text.length(); ci++)
+        {
+            final String c = String.valueOf((char) text.getCodepoint(ci));
+            if (LINE_BREAKS.contains(c))
+            {
+                x = 0;
+                lines++;
+            }
+            else if (WORD_BREAKS.contains(c))
+            {
+                x += font.getCharacterWidth(fontMetrics, text, ci);
+                forcedBreak = false;
+            }
+            else
+            {
+                int currentWordPixelWidth = 0;
+                for (int nwc = 0; nwc < text.length() - ci && !WORD_BREAKS.contains(String.valueOf((char) text.getCodepoint(ci + nwc))); nwc++)
+                {
+                    currentWordPixelWidth += font.getCharacterWidth(fontMetrics, text, ci + nwc);
+                }
+
+                final int charWidth = font.getCharacterWidth(fontMetrics, text, ci);
+                if (x + currentWordPixelWidth < lineWrapLength)
+                {
+                    x += charWidth;
+                }
+                else if (!forcedBreak && currentWordPixelWidth < lineWrapLength)
+                {
+                    x = charWidth;
+                    lines++;
+                }
+                else
+                {
+                    forcedBreak = true;
+                    if (charWidth > lineWrapLength - x)
+                    {
+                        x = 0;
+                        lines++;
+                    }
+                    x += charWidth;
+                }
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,81 @@
+package com.glitchcog.fontificator.benchmark;
+
+import com.glitchcog.fontificator.bot.Message;
+import com.glitchcog.fontificator.config.ConfigEmoji;
+import com.glitchcog.fontificator.config.ConfigMessage;
+import com.glitchcog.fontificator.config.FontType;
+
+/**
+ * Measures how much heap a parsed message holds on to, by filling the heap with parsed messages and dividing the growth
+ * after a garbage collection by how many there are. For comparison, it also estimates what each message used to carry
+ * to tell whether its text was out of date, a copy each of the message and emoji configuration, by measuring a freshly
+ * constructed pair. That's only an estimate, not a measurement of the old messages, since the copies held the values
+ * of the configuration they were copied from, not the empty ones of a new pair. Not a JMH benchmark, so it's run on
+ * its own:
+ *
+ * java -cp benchmarks/target/benchmarks.jar com.glitchcog.fontificator.benchmark.MessageFootprint [message count]
+ *
+ * @author Matt Yanos
+ */
+public class MessageFootprint
+{
+    private static final int DEFAULT_COUNT = 200000;
+
+    public static void main(String[] args)
+    {
+        final int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_COUNT;
+
+        ChatFixture fixture = new ChatFixture(FontType.FIXED_WIDTH);
+
+        long base = getUsedBytes();
+        Message[] messages = new Message[count];
+        for (int i = 0; i < count; i++)
+        {
+            messages[i] = fixture.createMessage("Kappa hello world " + i);
+            messages[i].getText(fixture.getEmojiManager(), fixture.getMessageConfig(), fixture.getEmojiConfig());
+        }
+        final long messageBytes = (getUsedBytes() - base) / count;
+        System.out.println("Parsed message: " + messageBytes + " bytes per message, " + (messageBytes * ConfigMessage.MAX_QUEUE_SIZE / 1024L) + " KB for a full queue of " + ConfigMessage.MAX_QUEUE_SIZE);
+        keep(messages);
+        messages = null;
+
+        base = getUsedBytes();
+        Object[] configCopies = new Object[count * 2];
+        for (int i = 0; i < count; i++)
+        {
+            configCopies[i * 2] = new ConfigMessage();
+            configCopies[i * 2 + 1] = new ConfigEmoji();
+        }
+        final long copyBytes = (getUsedBytes() - base) / count;
+        System.out.println("Message and emoji configuration copies, estimated from an empty pair: about " + copyBytes + " bytes per message, " + (copyBytes * ConfigMessage.MAX_QUEUE_SIZE / 1024L) + " KB for a full queue of " + ConfigMessage.MAX_QUEUE_SIZE);
+        keep(configCopies);
+    }
+
+    /**
+     * Get the bytes in use on the heap once everything that can be collected has been
+     *
+     * @return used bytes
+     */
+    private static long getUsedBytes()
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 5; i++)
+        {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Make sure what was measured is still reachable up until it's been measured
+     *
+     * @param obj
+     */
+    private static void keep(Object obj)
+    {
+        if (obj.hashCode() == System.nanoTime())
+        {
+            System.out.println();
+        }
+    }
+}
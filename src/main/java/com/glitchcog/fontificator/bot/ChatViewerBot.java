@@ -589,7 +589,7 @@ public class ChatViewerBot extends PircBot
 
         // Finally, construct the message and send it on to the chat display
         Message msg = new Message(type, casedUsername, message, privmsg);
-        chat.addMessage(msg);
+        chat.submitMessage(msg);
     }
 
     /**
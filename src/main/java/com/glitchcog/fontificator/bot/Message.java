@@ -19,7 +19,9 @@ import com.glitchcog.fontificator.emoji.EmojiManager;
 import com.glitchcog.fontificator.emoji.EmojiType;
 import com.glitchcog.fontificator.emoji.LazyLoadEmoji;
 import com.glitchcog.fontificator.emoji.TypedEmojiMap;
+import com.glitchcog.fontificator.sprite.MessageLayout;
 import com.glitchcog.fontificator.sprite.SpriteCharacterKey;
+import com.glitchcog.fontificator.sprite.SpriteText;
 
 /**
  * Anything posted to an IRC channel
@@ -32,6 +34,8 @@ public class Message
 
     private static final long UNCOMPLETED_TIME = 0L;
 
+    private static final long UNSTARTED_TIME = 0L;
+
     /**
      * A regex for checking for emoji keys in the text. Used in a String.split to divide the message into an array of
      * words and the spaces between them.
@@ -75,6 +79,11 @@ public class Message
      */
     private final String rawUsername;
 
+    /**
+     * The hash of the username, ignoring case, used to pick the username's color out of the palette
+     */
+    private final int usernameHash;
+
     /**
      * A time stamp of when the message was created
      */
@@ -93,14 +102,14 @@ public class Message
     /**
      * The badges to draw, the size of which is used to keep track of the position of the username, which is used for
      * coloring. This value is calculated when the text is parsed into SpriteCharacterKeys and will be null if all
-     * badges are switched off.
+     * badges are switched off. It's only ever replaced whole, because the text may be parsed off the render thread.
      */
-    private Map<String, LazyLoadEmoji> badges;
+    private volatile Map<String, LazyLoadEmoji> badges;
 
     /**
      * The String of the message put into text
      */
-    private SpriteCharacterKey[] text;
+    private SpriteText text;
 
     /**
      * The text that goes between a time stamp and a username
@@ -119,22 +128,40 @@ public class Message
     private float drawCursor;
 
     /**
-     * Keep track of the configuration the last time this message was parsed, so if no configuration has changed (check
-     * using ConfigMessage.equals), then there's no need to re-parse it
+     * The moment in time the message started rolling out at the current rollout speed, or UNSTARTED_TIME if it hasn't
+     */
+    private long rolloutStartTime;
+
+    /**
+     * The draw cursor at the rollout start time
+     */
+    private float rolloutStartCursor;
+
+    /**
+     * The message speed in characters per second the rollout is timed at
      */
-    private ConfigMessage lastMessageConfig;
+    private int rolloutSpeed;
 
     /**
-     * Keep track of the configuration the last time this message was parsed, so if no configuration has changed (check
-     * using ConfigEmoji.equals), then there's no need to re-parse it
+     * The generations of the message and emoji configuration the text was last parsed against, so if neither has moved on
+     * to a new generation since, there's no need to re-parse it. Zero is never a generation, so the text is always
+     * parsed the first time it's needed.
      */
-    private ConfigEmoji lastEmojiConfig;
+    private long textMessageGeneration;
+
+    private long textEmojiGeneration;
 
     /**
      * The moment in time the message was completely drawn
      */
     private long completedTime;
 
+    /**
+     * The word wrapped layout of the text the last time it was drawn, kept so it only needs to be recalculated when the
+     * text, line wrap length, or font configuration changes
+     */
+    private MessageLayout layout;
+
     /**
      * Construct a message specifying the type, username and content, but set the time stamp to the current local time
      * 
@@ -170,13 +197,13 @@ public class Message
     {
         this.type = type;
         this.rawUsername = rawUsername;
+        this.usernameHash = Math.abs(rawUsername.toLowerCase().hashCode());
         this.timestamp = timestamp;
         this.content = content;
         this.drawCursor = 0.0f;
-        this.lastMessageConfig = new ConfigMessage();
-        this.lastEmojiConfig = new ConfigEmoji();
         this.privmsg = privmsg;
         this.completedTime = UNCOMPLETED_TIME;
+        this.rolloutStartTime = UNSTARTED_TIME;
     }
 
     /**
@@ -210,39 +237,67 @@ public class Message
     }
 
     /**
-     * Increment the draw cursor based on the message text as defined by the specified messageConfig and its message
-     * speed setting
+     * Get the absolute value of the hash of the username, ignoring case
      * 
+     * @return usernameHash
+     */
+    public int getUsernameHash()
+    {
+        return usernameHash;
+    }
+
+    /**
+     * Advance the draw cursor to where the rollout should be at the specified time, based on how long ago the message
+     * started rolling out and the message speed setting of the specified messageConfig. Because the position comes from
+     * the time rather than from the number of times this is called, the message rolls out at the configured speed no
+     * matter how late or how often it is called. The first call starts the rollout, and a change in message speed
+     * partway through times the rest of the rollout at the new speed from where it is.
+     * 
+     * @param currentTime
+     *            in milliseconds
+     * @param emojiManager
      * @param messageConfig
      * @param emojiConfig
      */
-    public void incrementDrawCursor(EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+    public void advanceDrawCursor(long currentTime, EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
     {
-        float characterCount = 1.0f;
-
-        // If the message speed is zero, then it's max, so draw everything
-        if (messageConfig.getMessageSpeed() < 1)
+        // If the message speed is maxed out, draw everything
+        if (messageConfig.isMessageSpeedMax())
         {
-            characterCount = MAX_INT_AS_FLOAT;
+            drawCursor = MAX_INT_AS_FLOAT;
         }
-        // If this is true, then multiple characters need to be drawn per update
-        else if (1000L / messageConfig.getMessageSpeed() < ConfigMessage.SHORTEST_DELAY)
+        else
         {
-            characterCount = (float) messageConfig.getMessageSpeed() * (float) ConfigMessage.SHORTEST_DELAY / 1000.0f;
+            final int speed = messageConfig.getMessageSpeed();
+            if (rolloutStartTime == UNSTARTED_TIME || speed != rolloutSpeed)
+            {
+                rolloutStartTime = currentTime;
+                rolloutStartCursor = drawCursor;
+                rolloutSpeed = speed;
+            }
+            drawCursor = rolloutStartCursor + (currentTime - rolloutStartTime) * speed / 1000.0f;
         }
 
-        drawCursor += characterCount;
-
         // Whether the message is completely drawn yet needs to be calculated
         // and set as a member variable once true so that configuration changes
         // that modify the length of the message do not re-trigger drawing bits
         // of past messages
         if (drawCursor >= getMessageLength(emojiManager, messageConfig, emojiConfig))
         {
-            completedTime = System.currentTimeMillis();
+            completedTime = currentTime;
         }
     }
 
+    /**
+     * Get whether the message has started rolling out, meaning its draw cursor has been advanced at least once
+     * 
+     * @return rolloutStarted
+     */
+    public boolean isRolloutStarted()
+    {
+        return rolloutStartTime != UNSTARTED_TIME;
+    }
+
     /**
      * Get message length in characters. Emoji are considered single characters.
      * 
@@ -253,7 +308,7 @@ public class Message
      */
     public int getMessageLength(EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
     {
-        return getText(emojiManager, messageConfig, emojiConfig).length;
+        return getText(emojiManager, messageConfig, emojiConfig).length();
     }
 
     /**
@@ -340,7 +395,21 @@ public class Message
      */
     public int[] getIndexUsername(ConfigMessage messageConfig)
     {
-        int start = badges == null ? 0 : badges.size();
+        final Map<String, LazyLoadEmoji> currentBadges = badges;
+        return getIndexUsername(messageConfig, currentBadges == null ? 0 : currentBadges.size());
+    }
+
+    /**
+     * Get the indexes for when the username starts and right after the username based on the specified messageConfig
+     * and number of badges in front of the username
+     * 
+     * @param messageConfig
+     * @param badgeCount
+     * @return username index
+     */
+    private int[] getIndexUsername(ConfigMessage messageConfig, int badgeCount)
+    {
+        int start = badgeCount;
         int end;
         if (messageConfig.showTimestamps())
         {
@@ -377,38 +446,92 @@ public class Message
      * @param emojiConfig
      * @return message text
      */
-    public SpriteCharacterKey[] getText(EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+    public SpriteText getText(EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
     {
-        if (text != null && !isConfigChanged(messageConfig, emojiConfig))
-        {
-            return text;
-        }
-        else
+        // Read the generations before parsing, so a change made partway through gets the text parsed again next time
+        final long messageGeneration = messageConfig.getGeneration();
+        final long emojiGeneration = emojiConfig.getGeneration();
+        if (text == null || messageGeneration != textMessageGeneration || emojiGeneration != textEmojiGeneration)
         {
             text = parseIntoText(emojiManager, messageConfig, emojiConfig);
-            this.lastMessageConfig.deepCopy(messageConfig);
-            this.lastEmojiConfig.deepCopy(emojiConfig);
-            return text;
+            textMessageGeneration = messageGeneration;
+            textEmojiGeneration = emojiGeneration;
         }
+        return text;
     }
 
     /**
-     * Get whether the configuration has changed
-     * 
+     * Parse the full text of the message against the specified configuration without replacing the text it already
+     * has, so it can be parsed again off to the side while the current text is still being drawn
+     *
+     * @param emojiManager
      * @param messageConfig
      * @param emojiConfig
-     * @return changed
+     * @return message text
+     */
+    public SpriteText parseText(EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+    {
+        return parseIntoText(emojiManager, messageConfig, emojiConfig);
+    }
+
+    /**
+     * Keep the current text as though it had been parsed against the specified generations, so getText goes on
+     * returning it until it is replaced by replaceText
+     *
+     * @param messageGeneration
+     * @param emojiGeneration
      */
-    private boolean isConfigChanged(ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+    public void holdText(long messageGeneration, long emojiGeneration)
+    {
+        if (text != null)
+        {
+            textMessageGeneration = messageGeneration;
+            textEmojiGeneration = emojiGeneration;
+        }
+    }
+
+    /**
+     * Replace the held text with the specified text, unless the message has since moved on from the generations it
+     * was held at. If the text could not be parsed again, the held text is left out of date instead, so getText tries
+     * parsing it again.
+     *
+     * @param parsed
+     *            The newly parsed text, or null if parsing it failed
+     * @param messageGeneration
+     *            The message configuration generation the text was held at and parsed against
+     * @param emojiGeneration
+     *            The emoji configuration generation the text was held at and parsed against
+     * @return whether the text was replaced
+     */
+    public boolean replaceText(SpriteText parsed, long messageGeneration, long emojiGeneration)
+    {
+        if (textMessageGeneration != messageGeneration || textEmojiGeneration != emojiGeneration)
+        {
+            return false;
+        }
+        else if (parsed == null)
+        {
+            textMessageGeneration = 0L;
+            textEmojiGeneration = 0L;
+            return false;
+        }
+        text = parsed;
+        return true;
+    }
+
+    public MessageLayout getLayout()
     {
-        final boolean messageConfigChanged = !messageConfig.equals(lastMessageConfig);
-        final boolean emojiConfigChanged = !emojiConfig.equals(lastEmojiConfig);
-        return messageConfigChanged || emojiConfigChanged;
+        return layout;
+    }
+
+    public void setLayout(MessageLayout layout)
+    {
+        this.layout = layout;
     }
 
     /**
-     * Compile the array of SpriteCharacterKeys using the specified configuration. This can be a bit memory intensive
-     * since each character is a new albeit small object, so this should not be done many times a second, rather only if
+     * Compile the text of characters and emoji using the specified configuration. Characters are stored as codepoints,
+     * so only the emoji and badges are objects, but this should still not be done many times a second, rather only if
      * something has changed in the configuration to warrant a re-translation.
      * 
      * @param emojiManager
@@ -416,22 +539,25 @@ public class Message
      * @param emojiConfig
      * @return spriteCharacterKeys
      */
-    private SpriteCharacterKey[] parseIntoText(EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+    private SpriteText parseIntoText(EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
     {
-        List<SpriteCharacterKey> keyList = new ArrayList<SpriteCharacterKey>();
+        SpriteText parsed = new SpriteText(content.length() + 32);
 
         if (messageConfig.showTimestamps())
         {
             String timeStampStr = messageConfig.getTimerFormatter().format(timestamp);
             timeStampStr = applyCasing(timeStampStr, messageConfig.getMessageCasing());
-            keyList.addAll(toSpriteArray(timeStampStr));
+            parsed.appendCharacters(timeStampStr);
         }
 
+        // Built up locally and only stored on the message once complete
+        Map<String, LazyLoadEmoji> parsedBadges = null;
+
         // Add badges to be placed right before the username
         if (emojiConfig.isAnyBadgesEnabled())
         {
             // LinkedHashMap to preserve original insert order
-            badges = new LinkedHashMap<String, LazyLoadEmoji>();
+            parsedBadges = new LinkedHashMap<String, LazyLoadEmoji>();
 
             final boolean userIsModerator = privmsg.getUserType() == UserType.MOD;
 
@@ -447,11 +573,11 @@ public class Message
                 // FFZ badges are enabled, the user is a moderator, and the custom FFZ moderator badge exists
                 if (emojiConfig.isFfzBadgesEnabled() && userIsModerator && ffzBadgeBank.getEmoji(UserType.MOD.getKey()) != null)
                 {
-                    badges.put(UserType.MOD.getKey(), ffzBadgeBank.getEmoji(UserType.MOD.getKey()));
+                    parsedBadges.put(UserType.MOD.getKey(), ffzBadgeBank.getEmoji(UserType.MOD.getKey()));
                 }
                 else if (emojiConfig.isTwitchBadgesEnabled() && (testBadge = twitchBadgeBank.getEmoji(privmsg.getUserType().getKey())) != null)
                 {
-                    badges.put(privmsg.getUserType().getKey(), testBadge);
+                    parsedBadges.put(privmsg.getUserType().getKey(), testBadge);
                 }
             }
 
@@ -467,9 +593,9 @@ public class Message
                     if (users.contains(rawUsername.toLowerCase()))
                     {
                         LazyLoadEmoji ffzBadge = ffzBadgeBank.getEmoji(ffzBadgeType);
-                        if (ffzBadge.isReplacement() && badges.containsKey(ffzBadge.getReplaces()))
+                        if (ffzBadge.isReplacement() && parsedBadges.containsKey(ffzBadge.getReplaces()))
                         {
-                            badges.put(ffzBadge.getReplaces(), ffzBadge);
+                            parsedBadges.put(ffzBadge.getReplaces(), ffzBadge);
                             if (userIsModerator && true)
                             {
                                 replacementBadge = ffzBadge;
@@ -477,7 +603,7 @@ public class Message
                         }
                         else
                         {
-                            badges.put(ffzBadgeKey, ffzBadge);
+                            parsedBadges.put(ffzBadgeKey, ffzBadge);
                         }
                     }
                 }
@@ -489,7 +615,7 @@ public class Message
                 final String subStr = "subscriber";
                 if (privmsg.isSubscriber() && twitchBadgeBank.getEmoji(subStr) != null)
                 {
-                    badges.put(subStr, twitchBadgeBank.getEmoji(subStr));
+                    parsedBadges.put(subStr, twitchBadgeBank.getEmoji(subStr));
                 }
             }
 
@@ -497,24 +623,20 @@ public class Message
             final String turboStr = "turbo";
             if (emojiConfig.isTwitchBadgesEnabled() && privmsg.isTurbo() && twitchBadgeBank.getEmoji(turboStr) != null)
             {
-                badges.put(turboStr, twitchBadgeBank.getEmoji(turboStr));
+                parsedBadges.put(turboStr, twitchBadgeBank.getEmoji(turboStr));
             }
 
             final String primeStr = "prime";
             if (emojiConfig.isTwitchBadgesEnabled() && privmsg.isPrime() && twitchBadgeBank.getEmoji(primeStr) != null)
             {
-                badges.put(primeStr, twitchBadgeBank.getEmoji(primeStr));
+                parsedBadges.put(primeStr, twitchBadgeBank.getEmoji(primeStr));
             }
 
             // Add each badges map item onto the sprite character key list
-            for (LazyLoadEmoji lle : badges.values())
+            for (LazyLoadEmoji lle : parsedBadges.values())
             {
-                SpriteCharacterKey sck = new SpriteCharacterKey(lle, true);
-                if (userIsModerator && lle == replacementBadge)
-                {
-                    sck.setEmojiBgColorOverride(ConfigEmoji.MOD_BADGE_COLOR);
-                }
-                keyList.add(sck);
+                final boolean modReplacement = userIsModerator && lle == replacementBadge;
+                parsed.appendEmoji(new SpriteCharacterKey(lle, true, modReplacement ? ConfigEmoji.MOD_BADGE_COLOR : null));
             }
         }
 
@@ -522,36 +644,41 @@ public class Message
         {
             if (messageConfig.showTimestamps())
             {
-                keyList.addAll(toSpriteArray(TIMESTAMP_USERNAME_SPACER));
+                parsed.appendCharacters(TIMESTAMP_USERNAME_SPACER);
             }
             String casedUsername = getFormattedUsername(messageConfig);
-            keyList.addAll(toSpriteArray(casedUsername));
+            parsed.appendCharacters(casedUsername);
         }
-        if (messageConfig.showUsernames() || messageConfig.showTimestamps() || (emojiConfig.isAnyBadgesEnabled() && badges != null && !badges.isEmpty()))
+        if (messageConfig.showUsernames() || messageConfig.showTimestamps() || (parsedBadges != null && !parsedBadges.isEmpty()))
         {
             if (type == MessageType.NORMAL || type == MessageType.MANUAL)
             {
-                keyList.addAll(toSpriteArray(messageConfig.getContentBreaker()));
+                parsed.appendCharacters(messageConfig.getContentBreaker());
             }
             else
             {
-                keyList.addAll(toSpriteArray(type.getContentBreaker()));
+                parsed.appendCharacters(type.getContentBreaker());
             }
         }
 
         // Parse out the emoji, if enabled
         if (emojiConfig.isEmojiEnabled())
         {
-            processEmoji(content, privmsg, keyList, emojiManager, emojiConfig, MessageType.MANUAL.equals(type), messageConfig.getMessageCasing());
+            processEmoji(content, privmsg, parsed, emojiManager, emojiConfig, MessageType.MANUAL.equals(type), messageConfig.getMessageCasing());
         }
         // Configured for no emoji, so just chars
         else
         {
-            keyList.addAll(toSpriteArray(applyCasing(content, messageConfig.getMessageCasing())));
+            parsed.appendCharacters(applyCasing(content, messageConfig.getMessageCasing()));
         }
 
-        // Return the list as an array, to be kept until configuration is modified requiring a reprocessing
-        return keyList.toArray(new SpriteCharacterKey[keyList.size()]);
+        // Mark where the timestamp and username ended up, so the renderer can color them without working it out again
+        final int[] usernameIndex = getIndexUsername(messageConfig, parsedBadges == null ? 0 : parsedBadges.size());
+        parsed.setSpans(getIndexTimestamp(messageConfig), usernameIndex[0], usernameIndex[1]);
+        badges = parsedBadges;
+
+        // Return the text, to be kept until configuration is modified requiring a reprocessing
+        return parsed;
     }
 
     private static String[] codePointSpaceSplit(String content)
@@ -584,17 +711,17 @@ public class Message
 
     /**
      * Convert the content of the message into the appropriate emoji. Add those emoji and the remaining characters
-     * between them to the specified keyList array.
+     * between them to the specified text.
      * 
      * @param content
      * @param privmsg
-     * @param keyList
-     *            The array to add the emoji and remaining characters to
+     * @param parsed
+     *            The text to add the emoji and remaining characters to
      * @param emojiManager
      * @param emojiConfig
      * @param isManualMessage
      */
-    private static void processEmoji(String content, TwitchPrivmsg privmsg, List<SpriteCharacterKey> keyList, EmojiManager emojiManager, ConfigEmoji emojiConfig, boolean isManualMessage, MessageCasing casing)
+    private static void processEmoji(String content, TwitchPrivmsg privmsg, SpriteText parsed, EmojiManager emojiManager, ConfigEmoji emojiConfig, boolean isManualMessage, MessageCasing casing)
     {
         Map<Integer, EmoteAndIndices> emotes = privmsg.getEmotes();
 
@@ -662,8 +789,8 @@ public class Message
                         {
                             try
                             {
-                                lle = new LazyLoadEmoji(iconId, twitterEmojiUrl, EmojiType.TWITTER_EMOJI);
-                                emojiManager.getEmojiByType(EmojiType.TWITTER_EMOJI).put(iconId, lle);
+                                // Another thread parsing a message may have just added the same emoji, so keep whichever got there first
+                                lle = emojiManager.getEmojiByType(EmojiType.TWITTER_EMOJI).putIfAbsent(iconId, new LazyLoadEmoji(iconId, twitterEmojiUrl, EmojiType.TWITTER_EMOJI));
                             }
                             catch (MalformedURLException e)
                             {
@@ -672,25 +799,25 @@ public class Message
                         }
                         final String wordBit = words[w].substring(i, matcher.start());
 
-                        keyList.addAll(toSpriteArray(applyCasing(wordBit, casing)));
+                        parsed.appendCharacters(applyCasing(wordBit, casing));
                         if (lle != null)
                         {
-                            keyList.add(new SpriteCharacterKey(lle, false));
+                            parsed.appendEmoji(new SpriteCharacterKey(lle, false));
                         }
                         i = matcher.end();
                     }
                     final String wordBit = words[w].substring(i, words[w].length());
-                    keyList.addAll(toSpriteArray(applyCasing(wordBit, casing)));
+                    parsed.appendCharacters(applyCasing(wordBit, casing));
                 }
                 else
                 {
-                    keyList.addAll(toSpriteArray(applyCasing(words[w], casing)));
+                    parsed.appendCharacters(applyCasing(words[w], casing));
                 }
             }
 
             if (emoji != null)
             {
-                keyList.add(new SpriteCharacterKey(emoji, false));
+                parsed.appendEmoji(new SpriteCharacterKey(emoji, false));
             }
 
             // Increment the codeIndex by the current word's code point count
@@ -807,6 +934,18 @@ public class Message
         return completedTime == UNCOMPLETED_TIME ? 0L : (currentTime - completedTime) / 1000L;
     }
 
+    /**
+     * Get the first moment the age of the message is greater than the specified expiration time
+     * 
+     * @param expirationTime
+     *            in seconds
+     * @return deadline in milliseconds, or Long.MAX_VALUE if the message isn't yet completed
+     */
+    public long getExpirationDeadline(int expirationTime)
+    {
+        return completedTime == UNCOMPLETED_TIME ? Long.MAX_VALUE : completedTime + (expirationTime + 1) * 1000L;
+    }
+
     private static String applyCasing(String str, MessageCasing casing)
     {
         if (casing == null)
@@ -826,28 +965,6 @@ public class Message
         }
     }
 
-    /**
-     * Convert the string to a list of SpriteCharacterKeys by codepoint.
-     *
-     * @param str
-     * @returns A List of SpriteCharacterKeys
-     */
-    private static List<SpriteCharacterKey> toSpriteArray(String str)
-    {
-        // TODO java 1.8: We could use CharSequence and call codePoints method
-        List<SpriteCharacterKey> keyList = new ArrayList<SpriteCharacterKey>();
-
-        int i = 0;
-        while (i < str.length())
-        {
-            final int codepoint = str.codePointAt(i);
-            keyList.add(new SpriteCharacterKey(codepoint));
-            i += Character.charCount(codepoint);
-        }
-
-        return keyList;
-    }
-
     private String getFormattedUsername(ConfigMessage messageConfig)
     {
         final String usernameFormat = messageConfig.getUsernameFormat();
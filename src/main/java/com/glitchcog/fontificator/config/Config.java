@@ -2,6 +2,7 @@ package com.glitchcog.fontificator.config;
 
 import java.awt.Color;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.glitchcog.fontificator.config.loadreport.LoadConfigErrorType;
 import com.glitchcog.fontificator.config.loadreport.LoadConfigReport;
@@ -19,6 +20,18 @@ public abstract class Config
      */
     protected Properties props;
 
+    /**
+     * Hands out generation numbers to every config object, so no two of them are ever on the same generation
+     */
+    private static final AtomicLong GENERATIONS = new AtomicLong();
+
+    /**
+     * Changes to a new number whenever the config changes in a way that something built from it, like the text of a
+     * message, needs to be built again. Whatever is built can keep the generation it was built against and compare it
+     * to this, instead of keeping a copy of the whole config to compare against.
+     */
+    private volatile long generation = GENERATIONS.incrementAndGet();
+
     /**
      * Loads all fields from a Properties object
      * 
@@ -32,6 +45,24 @@ public abstract class Config
      */
     public abstract void reset();
 
+    /**
+     * Get the generation of this config, which is never zero and changes whenever the config does
+     * 
+     * @return generation
+     */
+    public long getGeneration()
+    {
+        return generation;
+    }
+
+    /**
+     * Move this config on to a new generation, to be called whenever one of its values changes
+     */
+    protected void bumpGeneration()
+    {
+        generation = GENERATIONS.incrementAndGet();
+    }
+
     protected static final String[] TRUES = new String[] { Boolean.toString(true), "yes", "+", "t", "1" };
     protected static final String[] FALSES = new String[] { Boolean.toString(false), "no", "-", "f", "0" };
 
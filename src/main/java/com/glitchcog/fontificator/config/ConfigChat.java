@@ -102,6 +102,11 @@ public class ConfigChat extends Config
      */
     private Boolean antiAlias;
 
+    /**
+     * Whether the chat is drawn on its own thread instead of on the event dispatch thread
+     */
+    private Boolean activeRendering;
+
     @Override
     public void reset()
     {
@@ -122,6 +127,7 @@ public class ConfigChat extends Config
         this.reverseScrolling = null;
         this.alwaysOnTop = null;
         this.antiAlias = null;
+        this.activeRendering = null;
     }
 
     public LoadConfigReport validateDimStrings(LoadConfigReport report, String widthStr, String heightStr)
@@ -226,6 +232,7 @@ public class ConfigChat extends Config
                 chromaInvert = evaluateBooleanString(props, FontificatorProperties.KEY_CHAT_INVERT_CHROMA, report);
                 alwaysOnTop = evaluateBooleanString(props, FontificatorProperties.KEY_CHAT_ALWAYS_ON_TOP, report);
                 antiAlias = evaluateBooleanString(props, FontificatorProperties.KEY_CHAT_ANTIALIAS, report);
+                activeRendering = evaluateBooleanString(props, FontificatorProperties.KEY_CHAT_ACTIVE_RENDERING, report);
             }
         }
 
@@ -373,6 +380,17 @@ public class ConfigChat extends Config
         props.setProperty(FontificatorProperties.KEY_CHAT_ANTIALIAS, Boolean.toString(antiAlias));
     }
 
+    public boolean isActiveRendering()
+    {
+        return activeRendering;
+    }
+
+    public void setActiveRendering(boolean activeRendering)
+    {
+        this.activeRendering = activeRendering;
+        props.setProperty(FontificatorProperties.KEY_CHAT_ACTIVE_RENDERING, Boolean.toString(activeRendering));
+    }
+
     public Boolean isChromaEnabled()
     {
         return chromaEnabled;
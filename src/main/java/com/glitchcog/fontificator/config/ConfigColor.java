@@ -18,6 +18,16 @@ public class ConfigColor extends Config
 {
     private static final Logger logger = Logger.getLogger(ConfigColor.class);
 
+    public static final int MIN_TINT_CACHE_SIZE = 1;
+    public static final int MAX_TINT_CACHE_SIZE = 1024;
+    public static final int DEFAULT_TINT_CACHE_SIZE = 32;
+
+    /**
+     * The number of levels each of the red, green, and blue components of a quantized Twitch color can be, making for a
+     * palette of at most 6 * 6 * 6 = 216 colors
+     */
+    private static final int QUANTIZE_LEVELS = 6;
+
     private Color bgColor;
 
     private Color fgColor;
@@ -40,6 +50,17 @@ public class ConfigColor extends Config
 
     private Boolean useTwitchColors;
 
+    /**
+     * Whether Twitch username colors are rounded onto a fixed palette, so there is a limit to how many tinted copies of
+     * the font are made for them
+     */
+    private Boolean quantizeTwitchColors;
+
+    /**
+     * The memory budget in megabytes for the tinted copies of the font and border images
+     */
+    private Integer tintCacheSize;
+
     @Override
     public void reset()
     {
@@ -54,9 +75,11 @@ public class ConfigColor extends Config
         this.colorMessage = null;
         this.colorJoin = null;
         this.useTwitchColors = null;
+        this.quantizeTwitchColors = null;
+        this.tintCacheSize = null;
     }
 
-    private void validateStrings(LoadConfigReport report, String palStr, String userBool, String timeBool, String msgBool, String joinBool, String twitchBool)
+    private void validateStrings(LoadConfigReport report, String palStr, String userBool, String timeBool, String msgBool, String joinBool, String twitchBool, String quantizeBool, String tintCacheStr)
     {
         evaluateColorString(props, FontificatorProperties.KEY_COLOR_BG, report);
         evaluateColorString(props, FontificatorProperties.KEY_COLOR_FG, report);
@@ -64,7 +87,8 @@ public class ConfigColor extends Config
         evaluateColorString(props, FontificatorProperties.KEY_COLOR_HIGHLIGHT, report);
         evaluateColorString(props, FontificatorProperties.KEY_COLOR_CHROMA_KEY, report);
 
-        validateBooleanStrings(report, userBool, timeBool, msgBool, joinBool, twitchBool);
+        validateBooleanStrings(report, userBool, timeBool, msgBool, joinBool, twitchBool, quantizeBool);
+        validateIntegerWithLimitString(FontificatorProperties.KEY_COLOR_TINT_CACHE_SIZE, tintCacheStr, MIN_TINT_CACHE_SIZE, MAX_TINT_CACHE_SIZE, report);
 
         // An empty palette is allowed
         if (!palStr.trim().isEmpty())
@@ -98,9 +122,11 @@ public class ConfigColor extends Config
             final String msgBool = props.getProperty(FontificatorProperties.KEY_COLOR_MESSAGE);
             final String joinBool = props.getProperty(FontificatorProperties.KEY_COLOR_JOIN);
             final String twitchBool = props.getProperty(FontificatorProperties.KEY_COLOR_TWITCH);
+            final String quantizeBool = props.getProperty(FontificatorProperties.KEY_COLOR_TWITCH_QUANTIZE);
+            final String tintCacheStr = props.getProperty(FontificatorProperties.KEY_COLOR_TINT_CACHE_SIZE);
 
             // Check that the values are valid
-            validateStrings(report, paletteStr, userBool, timeBool, msgBool, joinBool, twitchBool);
+            validateStrings(report, paletteStr, userBool, timeBool, msgBool, joinBool, twitchBool, quantizeBool, tintCacheStr);
 
             // Fill the values
             if (report.isErrorFree())
@@ -127,6 +153,8 @@ public class ConfigColor extends Config
                 colorMessage = evaluateBooleanString(props, FontificatorProperties.KEY_COLOR_MESSAGE, report);
                 colorJoin = evaluateBooleanString(props, FontificatorProperties.KEY_COLOR_JOIN, report);
                 useTwitchColors = evaluateBooleanString(props, FontificatorProperties.KEY_COLOR_TWITCH, report);
+                quantizeTwitchColors = evaluateBooleanString(props, FontificatorProperties.KEY_COLOR_TWITCH_QUANTIZE, report);
+                tintCacheSize = evaluateIntegerString(props, FontificatorProperties.KEY_COLOR_TINT_CACHE_SIZE, report);
             }
         }
 
@@ -259,6 +287,41 @@ public class ConfigColor extends Config
         props.setProperty(FontificatorProperties.KEY_COLOR_TWITCH, Boolean.toString(useTwitchColors));
     }
 
+    public boolean isQuantizeTwitchColors()
+    {
+        return quantizeTwitchColors;
+    }
+
+    public void setQuantizeTwitchColors(Boolean quantizeTwitchColors)
+    {
+        this.quantizeTwitchColors = quantizeTwitchColors;
+        props.setProperty(FontificatorProperties.KEY_COLOR_TWITCH_QUANTIZE, Boolean.toString(quantizeTwitchColors));
+    }
+
+    public int getTintCacheSize()
+    {
+        return tintCacheSize;
+    }
+
+    public void setTintCacheSize(Integer tintCacheSize)
+    {
+        this.tintCacheSize = tintCacheSize;
+        props.setProperty(FontificatorProperties.KEY_COLOR_TINT_CACHE_SIZE, Integer.toString(tintCacheSize));
+    }
+
+    /**
+     * Round each component of the specified color to the nearest of a few evenly spaced levels, so any color maps onto
+     * one of a fixed palette of colors
+     * 
+     * @param c
+     * @return quantized color
+     */
+    public static Color quantize(Color c)
+    {
+        final int step = 255 / (QUANTIZE_LEVELS - 1);
+        return new Color(Math.round(c.getRed() / (float) step) * step, Math.round(c.getGreen() / (float) step) * step, Math.round(c.getBlue() / (float) step) * step);
+    }
+
     public static String getColorHex(Color c)
     {
         return String.format("%06X", (0xFFFFFF & c.getRGB()));
@@ -196,6 +196,7 @@ public class ConfigEmoji extends Config
         bttvGlobalLoaded = null;
         bttvCached = null;
         twitterEnabled = null;
+        bumpGeneration();
     }
 
     public boolean isEmojiEnabled()
@@ -207,6 +208,7 @@ public class ConfigEmoji extends Config
     {
         this.emojiEnabled = emojiEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_ENABLED, Boolean.toString(emojiEnabled));
+        bumpGeneration();
     }
 
     public boolean isAnimationEnabled()
@@ -218,6 +220,7 @@ public class ConfigEmoji extends Config
     {
         this.animationEnabled = animationEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_ANIMATION, Boolean.toString(animationEnabled));
+        bumpGeneration();
     }
 
     public boolean isTwitchBadgesEnabled()
@@ -229,6 +232,7 @@ public class ConfigEmoji extends Config
     {
         this.twitchBadgesEnabled = twitchBadgesEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_TWITCH_BADGES, Boolean.toString(twitchBadgesEnabled));
+        bumpGeneration();
     }
 
     public boolean isFfzBadgesEnabled()
@@ -240,6 +244,7 @@ public class ConfigEmoji extends Config
     {
         this.ffzBadgesEnabled = ffzBadgesEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_FFZ_BADGES, Boolean.toString(ffzBadgesEnabled));
+        bumpGeneration();
     }
 
     /**
@@ -261,6 +266,7 @@ public class ConfigEmoji extends Config
     {
         this.emojiScaleToLine = emojiScaleToLine;
         props.setProperty(FontificatorProperties.KEY_EMOJI_SCALE_TO_LINE, Boolean.toString(emojiScaleToLine));
+        bumpGeneration();
     }
 
     public boolean isBadgeScaleToLine()
@@ -272,6 +278,7 @@ public class ConfigEmoji extends Config
     {
         this.badgeScaleToLine = badgeScaleToLine;
         props.setProperty(FontificatorProperties.KEY_EMOJI_BADGE_SCALE_TO_LINE, Boolean.toString(badgeScaleToLine));
+        bumpGeneration();
     }
 
     public int getBadgeHeightOffset()
@@ -283,6 +290,7 @@ public class ConfigEmoji extends Config
     {
         this.badgeHeightOffset = badgeHeightOffset;
         props.setProperty(FontificatorProperties.KEY_EMOJI_BADGE_HEIGHT_OFFSET, Integer.toString(badgeHeightOffset));
+        bumpGeneration();
     }
 
     public Integer getEmojiScale()
@@ -294,6 +302,7 @@ public class ConfigEmoji extends Config
     {
         this.emojiScale = emojiScale;
         props.setProperty(FontificatorProperties.KEY_EMOJI_SCALE, Integer.toString(emojiScale));
+        bumpGeneration();
     }
 
     public Integer getBadgeScale()
@@ -305,6 +314,7 @@ public class ConfigEmoji extends Config
     {
         this.badgeScale = badgeScale;
         props.setProperty(FontificatorProperties.KEY_EMOJI_BADGE_SCALE, Integer.toString(badgeScale));
+        bumpGeneration();
     }
 
     public EmojiLoadingDisplayStragegy getDisplayStrategy()
@@ -316,6 +326,7 @@ public class ConfigEmoji extends Config
     {
         this.displayStrategy = displayStrategy;
         props.setProperty(FontificatorProperties.KEY_EMOJI_DISPLAY_STRAT, displayStrategy.name());
+        bumpGeneration();
     }
 
     public boolean isTwitchEnabled()
@@ -327,6 +338,7 @@ public class ConfigEmoji extends Config
     {
         this.twitchEnabled = twitchEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_TWITCH_ENABLE, Boolean.toString(twitchEnabled));
+        bumpGeneration();
     }
 
     public boolean isTwitchCacheEnabled()
@@ -338,6 +350,7 @@ public class ConfigEmoji extends Config
     {
         this.twitchCacheEnabled = twitchCacheEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_TWITCH_CACHE, Boolean.toString(twitchCacheEnabled));
+        bumpGeneration();
     }
 
     public boolean isFfzEnabled()
@@ -349,6 +362,7 @@ public class ConfigEmoji extends Config
     {
         this.ffzEnabled = ffzEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_FFZ_ENABLE, Boolean.toString(ffzEnabled));
+        bumpGeneration();
     }
 
     public boolean isFfzCacheEnabled()
@@ -360,6 +374,7 @@ public class ConfigEmoji extends Config
     {
         this.ffzCacheEnabled = ffzCacheEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_FFZ_CACHE, Boolean.toString(ffzCacheEnabled));
+        bumpGeneration();
     }
 
     public Boolean isBttvEnabled()
@@ -376,6 +391,7 @@ public class ConfigEmoji extends Config
     {
         this.bttvCacheEnabled = bttvCacheEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_BTTV_CACHE, Boolean.toString(bttvCacheEnabled));
+        bumpGeneration();
     }
 
     /**
@@ -490,6 +506,8 @@ public class ConfigEmoji extends Config
             }
         }
 
+        bumpGeneration();
+
         return report;
     }
 
@@ -741,37 +759,6 @@ public class ConfigEmoji extends Config
         return true;
     }
 
-    /**
-     * Perform a deep copy of the emoji config, used to compare against the previous one used to generated the string of
-     * characters and emojis that are stored in a Message object
-     * 
-     * @param copy
-     */
-    public void deepCopy(ConfigEmoji copy)
-    {
-        this.emojiEnabled = copy.emojiEnabled;
-        this.twitchBadgesEnabled = copy.twitchBadgesEnabled;
-        this.ffzBadgesEnabled = copy.ffzBadgesEnabled;
-        this.emojiScaleToLine = copy.emojiScaleToLine;
-        this.emojiScale = copy.emojiScale;
-        this.badgeScaleToLine = copy.badgeScaleToLine;
-        this.badgeHeightOffset = copy.badgeHeightOffset;
-        this.badgeScale = copy.badgeScale;
-        this.displayStrategy = copy.displayStrategy;
-        this.twitchEnabled = copy.twitchEnabled;
-        this.ffzEnabled = copy.ffzEnabled;
-        this.twitchLoaded = copy.twitchLoaded;
-        this.twitchBadgesLoadedChannel = copy.twitchBadgesLoadedChannel;
-        this.ffzLoadedChannel = copy.ffzLoadedChannel;
-        this.ffzGlobalLoaded = copy.ffzGlobalLoaded;
-        this.bttvEnabled = copy.bttvEnabled;
-        this.bttvCacheEnabled = copy.bttvCacheEnabled;
-        this.bttvLoadedChannel = copy.bttvLoadedChannel;
-        this.bttvGlobalLoaded = copy.bttvGlobalLoaded;
-        this.bttvCached = copy.bttvCached;
-        this.twitterEnabled = copy.twitterEnabled;
-    }
-
     /**
      * Get whether the Twitch emotes have been loaded
      * 
@@ -790,6 +777,7 @@ public class ConfigEmoji extends Config
     public void setTwitchLoaded(Boolean twitchLoaded)
     {
         this.twitchLoaded = twitchLoaded;
+        bumpGeneration();
     }
 
     /**
@@ -810,6 +798,7 @@ public class ConfigEmoji extends Config
     public void setTwitchCached(Boolean twitchCached)
     {
         this.twitchCached = twitchCached;
+        bumpGeneration();
     }
 
     /**
@@ -841,6 +830,7 @@ public class ConfigEmoji extends Config
     public void setTwitchBadgesLoaded(String twitchBadgesLoadedChannel)
     {
         this.twitchBadgesLoadedChannel = twitchBadgesLoadedChannel;
+        bumpGeneration();
     }
 
     /**
@@ -852,6 +842,7 @@ public class ConfigEmoji extends Config
     public void setFfzBadgesLoaded(String ffzBadgesLoadedChannel)
     {
         this.ffzBadgesLoadedChannel = ffzBadgesLoadedChannel;
+        bumpGeneration();
     }
 
     /**
@@ -873,6 +864,7 @@ public class ConfigEmoji extends Config
     public void setFfzLoaded(String ffzLoadedChannel)
     {
         this.ffzLoadedChannel = ffzLoadedChannel;
+        bumpGeneration();
     }
 
     /**
@@ -893,6 +885,7 @@ public class ConfigEmoji extends Config
     public void setFfzGlobalLoaded(Boolean ffzGlobalLoaded)
     {
         this.ffzGlobalLoaded = ffzGlobalLoaded;
+        bumpGeneration();
     }
 
     /**
@@ -913,12 +906,14 @@ public class ConfigEmoji extends Config
     public void setFfzCached(Boolean ffzCached)
     {
         this.ffzCached = ffzCached;
+        bumpGeneration();
     }
 
     public void setBttvEnabled(Boolean bttvEnabled)
     {
         this.bttvEnabled = bttvEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_BTTV_ENABLE, Boolean.toString(bttvEnabled));
+        bumpGeneration();
     }
 
     public String getBttvLoadedChannel()
@@ -929,11 +924,13 @@ public class ConfigEmoji extends Config
     public void setBttvLoadedChannel(String bttvLoadedChannel)
     {
         this.bttvLoadedChannel = bttvLoadedChannel;
+        bumpGeneration();
     }
 
     public void setBttvGlobalLoaded(Boolean bttvGlobalLoaded)
     {
         this.bttvGlobalLoaded = bttvGlobalLoaded;
+        bumpGeneration();
     }
 
     public boolean isBttvLoaded(String testChannel)
@@ -944,6 +941,7 @@ public class ConfigEmoji extends Config
     public void setBttfLoaded(String bttvLoadedChannel)
     {
         this.bttvLoadedChannel = bttvLoadedChannel;
+        bumpGeneration();
     }
 
     public Boolean isBttvGlobalLoaded()
@@ -954,6 +952,7 @@ public class ConfigEmoji extends Config
     public void setBttfGlobalLoaded(Boolean bttvGlobalLoaded)
     {
         this.bttvGlobalLoaded = bttvGlobalLoaded;
+        bumpGeneration();
     }
 
     public boolean isBttvCached()
@@ -964,6 +963,7 @@ public class ConfigEmoji extends Config
     public void setBttvCached(Boolean bttvCached)
     {
         this.bttvCached = bttvCached;
+        bumpGeneration();
     }
 
     public boolean isTwitterEnabled()
@@ -975,6 +975,7 @@ public class ConfigEmoji extends Config
     {
         this.twitterEnabled = twitterEnabled;
         props.setProperty(FontificatorProperties.KEY_EMOJI_TWITTER_ENABLE, Boolean.toString(twitterEnabled));
+        bumpGeneration();
     }
 
     /**
@@ -1045,6 +1046,7 @@ public class ConfigEmoji extends Config
                 this.bttvCached = true;
             }
         }
+        bumpGeneration();
     }
 
     /**
@@ -1063,6 +1065,7 @@ public class ConfigEmoji extends Config
         this.bttvLoadedChannel = null;
         this.bttvGlobalLoaded = false;
         this.bttvCached = null;
+        bumpGeneration();
     }
 
     /**
@@ -107,6 +107,7 @@ public class ConfigFont extends Config
         lineSpacing = 0;
         charSpacing = 0;
         messageSpacing = 0;
+        bumpGeneration();
     }
 
     public void validateFontFile(LoadConfigReport report, String fontFilename)
@@ -259,6 +260,8 @@ public class ConfigFont extends Config
             }
         }
 
+        bumpGeneration();
+
         return report;
     }
 
@@ -270,6 +273,7 @@ public class ConfigFont extends Config
     public void setFontFilename(String fontFilename)
     {
         this.fontFilename = fontFilename;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_FILE_FONT, fontFilename);
     }
 
@@ -281,6 +285,7 @@ public class ConfigFont extends Config
     public void setBorderFilename(String borderFilename)
     {
         this.borderFilename = borderFilename;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_FILE_BORDER, borderFilename);
     }
 
@@ -292,6 +297,7 @@ public class ConfigFont extends Config
     public void setGridWidth(int gridWidth)
     {
         this.gridWidth = gridWidth;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_GRID_WIDTH, Integer.toString(gridWidth));
     }
 
@@ -303,6 +309,7 @@ public class ConfigFont extends Config
     public void setGridHeight(int gridHeight)
     {
         this.gridHeight = gridHeight;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_GRID_HEIGHT, Integer.toString(gridHeight));
     }
 
@@ -314,6 +321,7 @@ public class ConfigFont extends Config
     public void setFontScale(float fontScale)
     {
         this.fontScale = fontScale;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_SCALE, Float.toString(fontScale));
     }
 
@@ -325,6 +333,7 @@ public class ConfigFont extends Config
     public void setBorderScale(float borderScale)
     {
         this.borderScale = borderScale;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_BORDER_SCALE, Float.toString(borderScale));
     }
 
@@ -336,6 +345,7 @@ public class ConfigFont extends Config
     public void setBorderInsetX(int borderInsetX)
     {
         this.borderInsetX = borderInsetX;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_BORDER_INSET_X, Integer.toString(borderInsetX));
     }
 
@@ -347,6 +357,7 @@ public class ConfigFont extends Config
     public void setBorderInsetY(int borderInsetY)
     {
         this.borderInsetY = borderInsetY;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_BORDER_INSET_Y, Integer.toString(borderInsetY));
     }
 
@@ -358,6 +369,7 @@ public class ConfigFont extends Config
     public void setSpaceWidth(int spaceWidth)
     {
         this.spaceWidth = spaceWidth;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_SPACE_WIDTH, Integer.toString(spaceWidth));
     }
 
@@ -369,6 +381,7 @@ public class ConfigFont extends Config
     public void setBaselineOffset(int baselineOffset)
     {
         this.baselineOffset = baselineOffset;
+        bumpGeneration();
         props.getProperty(FontificatorProperties.KEY_FONT_BASELINE_OFFSET, Integer.toString(baselineOffset));
     }
 
@@ -380,6 +393,7 @@ public class ConfigFont extends Config
     public void setCharacterKey(String characterKey)
     {
         this.characterKey = characterKey;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_CHARACTERS, characterKey);
     }
 
@@ -391,6 +405,7 @@ public class ConfigFont extends Config
     public void setUnknownChar(char unknownChar)
     {
         this.unknownChar = unknownChar;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_UNKNOWN_CHAR, Character.toString(unknownChar));
     }
 
@@ -402,6 +417,7 @@ public class ConfigFont extends Config
     public void setExtendedCharEnabled(boolean extendedCharEnabled)
     {
         this.extendedCharEnabled = extendedCharEnabled;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_EXTENDED_CHAR, Boolean.toString(extendedCharEnabled));
     }
 
@@ -413,6 +429,7 @@ public class ConfigFont extends Config
     public void setLineSpacing(int lineSpacing)
     {
         this.lineSpacing = lineSpacing;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_SPACING_LINE, Integer.toString(lineSpacing));
     }
 
@@ -424,6 +441,7 @@ public class ConfigFont extends Config
     public void setCharSpacing(int charSpacing)
     {
         this.charSpacing = charSpacing;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_SPACING_CHAR, Integer.toString(charSpacing));
     }
 
@@ -435,6 +453,7 @@ public class ConfigFont extends Config
     public void setMessageSpacing(int messageSpacing)
     {
         this.messageSpacing = messageSpacing;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_SPACING_MESSAGE, Integer.toString(messageSpacing));
     }
 
@@ -446,6 +465,7 @@ public class ConfigFont extends Config
     public void setFontType(FontType fontType)
     {
         this.fontType = fontType;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_FONT_TYPE, fontType.name());
     }
 
@@ -7,8 +7,7 @@ import java.util.Properties;
 
 import com.glitchcog.fontificator.config.loadreport.LoadConfigErrorType;
 import com.glitchcog.fontificator.config.loadreport.LoadConfigReport;
-import com.glitchcog.fontificator.gui.chat.clock.MessageExpirer;
-import com.glitchcog.fontificator.gui.chat.clock.MessageProgressor;
+import com.glitchcog.fontificator.gui.chat.clock.FrameScheduler;
 
 /**
  * The configuration for how to display the messages
@@ -17,12 +16,6 @@ import com.glitchcog.fontificator.gui.chat.clock.MessageProgressor;
  */
 public class ConfigMessage extends Config
 {
-    /**
-     * This is the shortest a delay should be for updating the message. 67 ms translates to approximately 15 updates per
-     * second
-     */
-    public static final long SHORTEST_DELAY = 67L;
-
     public static final int MIN_QUEUE_SIZE = 1;
     public static final int MAX_QUEUE_SIZE = 5000;
 
@@ -68,9 +61,10 @@ public class ConfigMessage extends Config
     private String contentBreaker;
 
     /**
-     * The formatter for timestampstimeFormatIntimeFormatInputput
+     * The formatter for timestamps, one per thread, because messages are parsed on several threads at once and a
+     * SimpleDateFormat can't be shared between them. Replaced whole when the time format changes.
      */
-    private DateFormat timeFormatter;
+    private volatile ThreadLocal<DateFormat> timeFormatter;
 
     /**
      * The number of messages to keep to draw and scroll back through
@@ -130,6 +124,7 @@ public class ConfigMessage extends Config
         this.caseResolutionType = null;
         this.specifyCaseAllowed = null;
         this.messageCasing = null;
+        bumpGeneration();
     }
 
     public LoadConfigReport validateTimeFormat(LoadConfigReport report, String timeFormatStr)
@@ -225,6 +220,8 @@ public class ConfigMessage extends Config
             }
         }
 
+        bumpGeneration();
+
         return report;
     }
 
@@ -239,6 +236,7 @@ public class ConfigMessage extends Config
     public void setJoinMessages(boolean joinMessages)
     {
         this.joinMessages = joinMessages;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_MESSAGE_JOIN, Boolean.toString(joinMessages));
     }
 
@@ -253,6 +251,7 @@ public class ConfigMessage extends Config
     public void setShowUsernames(boolean usernames)
     {
         this.usernames = usernames;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_MESSAGE_USERNAME, Boolean.toString(usernames));
     }
 
@@ -267,6 +266,7 @@ public class ConfigMessage extends Config
     public void setShowTimestamps(boolean timestamps)
     {
         this.timestamps = timestamps;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_MESSAGE_TIMESTAMP, Boolean.toString(timestamps));
     }
 
@@ -281,6 +281,7 @@ public class ConfigMessage extends Config
     public void setUsernameFormat(String usernameFormat)
     {
         this.usernameFormat = usernameFormat;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_MESSAGE_USERFORMAT, usernameFormat);
     }
 
@@ -292,15 +293,29 @@ public class ConfigMessage extends Config
         return timeFormat;
     }
 
+    /**
+     * Get the formatter for timestamps belonging to the calling thread
+     *
+     * @return formatter
+     */
     public DateFormat getTimerFormatter()
     {
-        return timeFormatter;
+        final ThreadLocal<DateFormat> formatters = timeFormatter;
+        return formatters == null ? null : formatters.get();
     }
 
-    public void setTimeFormat(String timeFormat)
+    public void setTimeFormat(final String timeFormat)
     {
         this.timeFormat = timeFormat;
-        this.timeFormatter = new SimpleDateFormat(timeFormat);
+        this.timeFormatter = new ThreadLocal<DateFormat>()
+        {
+            @Override
+            protected DateFormat initialValue()
+            {
+                return new SimpleDateFormat(timeFormat);
+            }
+        };
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_MESSAGE_TIMEFORMAT, timeFormat);
     }
 
@@ -315,6 +330,7 @@ public class ConfigMessage extends Config
     public void setContentBreaker(String contentBreaker)
     {
         this.contentBreaker = contentBreaker;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_MESSAGE_CONTENT_BREAK, contentBreaker);
     }
 
@@ -342,24 +358,39 @@ public class ConfigMessage extends Config
         return messageSpeed == null ? 0 : messageSpeed;
     }
 
+    /**
+     * Get whether the message speed is maxed out, meaning messages are drawn all at once instead of rolled out
+     * 
+     * @return messageSpeedMax
+     */
+    public boolean isMessageSpeedMax()
+    {
+        return getMessageSpeed() <= 0 || getMessageSpeed() >= MAX_MESSAGE_SPEED;
+    }
+
+    /**
+     * Get the time it takes to roll out one character of a message
+     * 
+     * @return delay in milliseconds
+     */
     public long getMessageDelay()
     {
-        return this.messageSpeed <= 0 || this.messageSpeed >= MAX_MESSAGE_SPEED ? MIN_MESSAGE_DELAY : 1000L / this.messageSpeed;
+        return isMessageSpeedMax() ? MIN_MESSAGE_DELAY : 1000L / this.messageSpeed;
     }
 
     /**
-     * Set the message speed and update the message progressor timer to match the newly set speed
+     * Set the message speed and restart the message rollout to match the newly set speed
      * 
      * @param messageSpeed
-     * @param progressor
+     * @param scheduler
      */
-    public void setMessageSpeed(int messageSpeed, MessageProgressor progressor)
+    public void setMessageSpeed(int messageSpeed, FrameScheduler scheduler)
     {
         this.messageSpeed = messageSpeed;
         props.setProperty(FontificatorProperties.KEY_MESSAGE_SPEED, Integer.toString(messageSpeed));
-        if (progressor != null)
+        if (scheduler != null)
         {
-            progressor.refreshTimer(getMessageDelay());
+            scheduler.restartRollout();
         }
     }
 
@@ -368,20 +399,14 @@ public class ConfigMessage extends Config
         return expirationTime;
     }
 
-    public void setExpirationTime(Integer expirationTime, MessageExpirer expirer)
+    public void setExpirationTime(Integer expirationTime, FrameScheduler scheduler)
     {
         this.expirationTime = expirationTime;
         props.setProperty(FontificatorProperties.KEY_MESSAGE_EXPIRATION_TIME, Integer.toString(expirationTime));
-        if (expirer != null)
+        if (scheduler != null)
         {
-            if (expirationTime == MIN_MESSAGE_EXPIRATION)
-            {
-                expirer.cancelLatest();
-            }
-            else
-            {
-                expirer.startClock();
-            }
+            // Messages may have just become expirable, or stopped being expirable
+            scheduler.refreshExpirations();
         }
     }
 
@@ -442,6 +467,7 @@ public class ConfigMessage extends Config
     public void setMessageCasing(MessageCasing messageCasing)
     {
         this.messageCasing = messageCasing;
+        bumpGeneration();
         props.setProperty(FontificatorProperties.KEY_MESSAGE_CASING, messageCasing.name());
     }
 
@@ -517,21 +543,4 @@ public class ConfigMessage extends Config
         return true;
     }
 
-    /**
-     * Perform a deep copy of the message config, used to compare against the previous one used to generated the string
-     * of characters and emojis that are stored in a Message object
-     * 
-     * @param copy
-     */
-    public void deepCopy(ConfigMessage copy)
-    {
-        this.joinMessages = copy.joinMessages;
-        this.usernameFormat = copy.usernameFormat;
-        this.timeFormat = copy.timeFormat;
-        this.contentBreaker = copy.contentBreaker;
-        this.timestamps = copy.timestamps;
-        this.usernames = copy.usernames;
-        this.messageCasing = copy.messageCasing;
-    }
-
 }
@@ -108,10 +108,11 @@ public class FontificatorProperties extends Properties
     public static final String KEY_CHAT_CHROMA_CORNER = "chromaCornerRadius";
     public static final String KEY_CHAT_ALWAYS_ON_TOP = "chatAlwaysOnTop";
     public static final String KEY_CHAT_ANTIALIAS = "chatAntialias";
+    public static final String KEY_CHAT_ACTIVE_RENDERING = "chatActiveRendering";
 
-    public static final String[] CHAT_KEYS = new String[] { KEY_CHAT_SCROLL, KEY_CHAT_RESIZABLE, KEY_CHAT_POSITION, KEY_CHAT_POSITION_X, KEY_CHAT_POSITION_Y, KEY_CHAT_FROM_BOTTOM, KEY_CHAT_WIDTH, KEY_CHAT_HEIGHT, KEY_CHAT_CHROMA_ENABLED, KEY_CHAT_INVERT_CHROMA, KEY_CHAT_REVERSE_SCROLLING, KEY_CHAT_CHROMA_LEFT, KEY_CHAT_CHROMA_TOP, KEY_CHAT_CHROMA_RIGHT, KEY_CHAT_CHROMA_BOTTOM, KEY_CHAT_CHROMA_CORNER, KEY_CHAT_ALWAYS_ON_TOP, KEY_CHAT_ANTIALIAS };
+    public static final String[] CHAT_KEYS = new String[] { KEY_CHAT_SCROLL, KEY_CHAT_RESIZABLE, KEY_CHAT_POSITION, KEY_CHAT_POSITION_X, KEY_CHAT_POSITION_Y, KEY_CHAT_FROM_BOTTOM, KEY_CHAT_WIDTH, KEY_CHAT_HEIGHT, KEY_CHAT_CHROMA_ENABLED, KEY_CHAT_INVERT_CHROMA, KEY_CHAT_REVERSE_SCROLLING, KEY_CHAT_CHROMA_LEFT, KEY_CHAT_CHROMA_TOP, KEY_CHAT_CHROMA_RIGHT, KEY_CHAT_CHROMA_BOTTOM, KEY_CHAT_CHROMA_CORNER, KEY_CHAT_ALWAYS_ON_TOP, KEY_CHAT_ANTIALIAS, KEY_CHAT_ACTIVE_RENDERING };
 
-    public static final String[] CHAT_KEYS_EXCEPT_WINDOW_POSITION = new String[] { KEY_CHAT_SCROLL, KEY_CHAT_RESIZABLE, KEY_CHAT_POSITION, KEY_CHAT_FROM_BOTTOM, KEY_CHAT_WIDTH, KEY_CHAT_HEIGHT, KEY_CHAT_CHROMA_ENABLED, KEY_CHAT_INVERT_CHROMA, KEY_CHAT_REVERSE_SCROLLING, KEY_CHAT_CHROMA_LEFT, KEY_CHAT_CHROMA_TOP, KEY_CHAT_CHROMA_RIGHT, KEY_CHAT_CHROMA_BOTTOM, KEY_CHAT_CHROMA_CORNER, KEY_CHAT_ALWAYS_ON_TOP, KEY_CHAT_ANTIALIAS };
+    public static final String[] CHAT_KEYS_EXCEPT_WINDOW_POSITION = new String[] { KEY_CHAT_SCROLL, KEY_CHAT_RESIZABLE, KEY_CHAT_POSITION, KEY_CHAT_FROM_BOTTOM, KEY_CHAT_WIDTH, KEY_CHAT_HEIGHT, KEY_CHAT_CHROMA_ENABLED, KEY_CHAT_INVERT_CHROMA, KEY_CHAT_REVERSE_SCROLLING, KEY_CHAT_CHROMA_LEFT, KEY_CHAT_CHROMA_TOP, KEY_CHAT_CHROMA_RIGHT, KEY_CHAT_CHROMA_BOTTOM, KEY_CHAT_CHROMA_CORNER, KEY_CHAT_ALWAYS_ON_TOP, KEY_CHAT_ANTIALIAS, KEY_CHAT_ACTIVE_RENDERING };
 
     public static final String KEY_COLOR_BG = "colorBackground";
     public static final String KEY_COLOR_FG = "colorForeground";
@@ -124,10 +125,12 @@ public class FontificatorProperties extends Properties
     public static final String KEY_COLOR_MESSAGE = "colorMessage";
     public static final String KEY_COLOR_JOIN = "colorJoin";
     public static final String KEY_COLOR_TWITCH = "colorUseTwitch";
+    public static final String KEY_COLOR_TWITCH_QUANTIZE = "colorQuantizeTwitch";
+    public static final String KEY_COLOR_TINT_CACHE_SIZE = "colorTintCacheMegabytes";
 
-    public static final String[] COLOR_KEYS = new String[] { KEY_COLOR_BG, KEY_COLOR_FG, KEY_COLOR_BORDER, KEY_COLOR_HIGHLIGHT, KEY_COLOR_CHROMA_KEY, KEY_COLOR_PALETTE, KEY_COLOR_USERNAME, KEY_COLOR_TIMESTAMP, KEY_COLOR_MESSAGE, KEY_COLOR_JOIN, KEY_COLOR_TWITCH };
+    public static final String[] COLOR_KEYS = new String[] { KEY_COLOR_BG, KEY_COLOR_FG, KEY_COLOR_BORDER, KEY_COLOR_HIGHLIGHT, KEY_COLOR_CHROMA_KEY, KEY_COLOR_PALETTE, KEY_COLOR_USERNAME, KEY_COLOR_TIMESTAMP, KEY_COLOR_MESSAGE, KEY_COLOR_JOIN, KEY_COLOR_TWITCH, KEY_COLOR_TWITCH_QUANTIZE, KEY_COLOR_TINT_CACHE_SIZE };
 
-    public static final String[] COLOR_KEYS_WITHOUT_PALETTE = new String[] { KEY_COLOR_BG, KEY_COLOR_FG, KEY_COLOR_BORDER, KEY_COLOR_HIGHLIGHT, KEY_COLOR_CHROMA_KEY, KEY_COLOR_USERNAME, KEY_COLOR_TIMESTAMP, KEY_COLOR_MESSAGE, KEY_COLOR_JOIN, KEY_COLOR_TWITCH };
+    public static final String[] COLOR_KEYS_WITHOUT_PALETTE = new String[] { KEY_COLOR_BG, KEY_COLOR_FG, KEY_COLOR_BORDER, KEY_COLOR_HIGHLIGHT, KEY_COLOR_CHROMA_KEY, KEY_COLOR_USERNAME, KEY_COLOR_TIMESTAMP, KEY_COLOR_MESSAGE, KEY_COLOR_JOIN, KEY_COLOR_TWITCH, KEY_COLOR_TWITCH_QUANTIZE, KEY_COLOR_TINT_CACHE_SIZE };
 
     public static final String KEY_MESSAGE_JOIN = "messageShowJoin";
     public static final String KEY_MESSAGE_USERNAME = "messageShowUsername";
@@ -643,6 +646,7 @@ public class FontificatorProperties extends Properties
         setPropertyOverride(KEY_CHAT_CHROMA_CORNER, Integer.toString(10), override);
         setPropertyOverride(KEY_CHAT_ALWAYS_ON_TOP, falseString, override);
         setPropertyOverride(KEY_CHAT_ANTIALIAS, falseString, override);
+        setPropertyOverride(KEY_CHAT_ACTIVE_RENDERING, falseString, override);
 
         setPropertyOverride(KEY_COLOR_BG, "000000", override);
         setPropertyOverride(KEY_COLOR_FG, "FFFFFF", override);
@@ -655,6 +659,8 @@ public class FontificatorProperties extends Properties
         setPropertyOverride(KEY_COLOR_MESSAGE, falseString, override);
         setPropertyOverride(KEY_COLOR_JOIN, falseString, override);
         setPropertyOverride(KEY_COLOR_TWITCH, falseString, override);
+        setPropertyOverride(KEY_COLOR_TWITCH_QUANTIZE, falseString, override);
+        setPropertyOverride(KEY_COLOR_TINT_CACHE_SIZE, Integer.toString(ConfigColor.DEFAULT_TINT_CACHE_SIZE), override);
 
         setPropertyOverride(KEY_MESSAGE_JOIN, falseString, override);
         setPropertyOverride(KEY_MESSAGE_USERNAME, trueString, override);
@@ -0,0 +1,441 @@
+package com.glitchcog.fontificator.config;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.util.List;
+
+/**
+ * A frozen copy of every configuration value used to draw the chat, taken once whenever the configuration changes. The
+ * drawing code reads from this instead of the configuration objects, so the values are plain fields instead of boxed
+ * ones, and a frame is drawn entirely with the values from before a change or entirely with the values from after it,
+ * even if a control panel is partway through changing them.
+ *
+ * @author Matt Yanos
+ */
+public final class RenderSnapshot
+{
+    /**
+     * The generation of the font configuration, read before any of its values, so if it changes while they're being
+     * copied, the next snapshot is on a newer generation
+     */
+    private final long fontGeneration;
+
+    private final float fontScale;
+
+    private final float borderScale;
+
+    private final int borderInsetX;
+
+    private final int borderInsetY;
+
+    private final int baselineOffset;
+
+    private final char unknownChar;
+
+    private final boolean extendedCharEnabled;
+
+    private final int lineSpacing;
+
+    private final int charSpacing;
+
+    private final int messageSpacing;
+
+    private final FontType fontType;
+
+    private final boolean chatFromBottom;
+
+    private final boolean reverseScrolling;
+
+    private final boolean antiAlias;
+
+    private final boolean chromaEnabled;
+
+    private final boolean chromaInvert;
+
+    /**
+     * The chroma border, stored the same way as the configuration's rectangle: the left inset in x, the top inset in y,
+     * the right inset in width, and the bottom inset in height
+     */
+    private final int chromaLeft;
+
+    private final int chromaTop;
+
+    private final int chromaRight;
+
+    private final int chromaBottom;
+
+    private final int chromaCornerRadius;
+
+    private final Color bgColor;
+
+    private final Color fgColor;
+
+    private final Color borderColor;
+
+    private final Color highlight;
+
+    private final Color chromaColor;
+
+    private final Color[] palette;
+
+    private final boolean colorUsername;
+
+    private final boolean colorTimestamp;
+
+    private final boolean colorMessage;
+
+    private final boolean colorJoin;
+
+    private final boolean useTwitchColors;
+
+    private final boolean quantizeTwitchColors;
+
+    private final int tintCacheSize;
+
+    private final boolean joinMessages;
+
+    private final boolean usernames;
+
+    private final boolean timestamps;
+
+    private final boolean hideEmptyBorder;
+
+    private final boolean hideEmptyBackground;
+
+    private final boolean animationEnabled;
+
+    private final boolean emojiScaleToLine;
+
+    private final boolean badgeScaleToLine;
+
+    private final int badgeHeightOffset;
+
+    private final int emojiScale;
+
+    private final int badgeScale;
+
+    private final EmojiLoadingDisplayStragegy displayStrategy;
+
+    /**
+     * Copy the values used to draw the chat out of the configuration
+     *
+     * @param fontConfig
+     * @param chatConfig
+     * @param colorConfig
+     * @param messageConfig
+     * @param emojiConfig
+     */
+    public RenderSnapshot(ConfigFont fontConfig, ConfigChat chatConfig, ConfigColor colorConfig, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+    {
+        this.fontGeneration = fontConfig.getGeneration();
+        this.fontScale = fontConfig.getFontScale();
+        this.borderScale = fontConfig.getBorderScale();
+        this.borderInsetX = fontConfig.getBorderInsetX();
+        this.borderInsetY = fontConfig.getBorderInsetY();
+        this.baselineOffset = fontConfig.getBaselineOffset();
+        this.unknownChar = fontConfig.getUnknownChar();
+        this.extendedCharEnabled = fontConfig.isExtendedCharEnabled();
+        this.lineSpacing = fontConfig.getLineSpacing();
+        this.charSpacing = fontConfig.getCharSpacing();
+        this.messageSpacing = fontConfig.getMessageSpacing();
+        this.fontType = fontConfig.getFontType();
+
+        this.chatFromBottom = chatConfig.isChatFromBottom();
+        this.reverseScrolling = chatConfig.isReverseScrolling();
+        this.antiAlias = chatConfig.isAntiAlias();
+        this.chromaEnabled = chatConfig.isChromaEnabled();
+        this.chromaInvert = chatConfig.isChromaInvert();
+        final Rectangle chromaBorder = chatConfig.getChromaBorder();
+        this.chromaLeft = chromaBorder.x;
+        this.chromaTop = chromaBorder.y;
+        this.chromaRight = chromaBorder.width;
+        this.chromaBottom = chromaBorder.height;
+        this.chromaCornerRadius = chatConfig.getChromaCornerRadius();
+
+        this.bgColor = colorConfig.getBgColor();
+        this.fgColor = colorConfig.getFgColor();
+        this.borderColor = colorConfig.getBorderColor();
+        this.highlight = colorConfig.getHighlight();
+        this.chromaColor = colorConfig.getChromaColor();
+        final List<Color> paletteList = colorConfig.getPalette();
+        this.palette = paletteList.toArray(new Color[paletteList.size()]);
+        this.colorUsername = colorConfig.isColorUsername();
+        this.colorTimestamp = colorConfig.isColorTimestamp();
+        this.colorMessage = colorConfig.isColorMessage();
+        this.colorJoin = colorConfig.isColorJoin();
+        this.useTwitchColors = colorConfig.isUseTwitchColors();
+        this.quantizeTwitchColors = colorConfig.isQuantizeTwitchColors();
+        this.tintCacheSize = colorConfig.getTintCacheSize();
+
+        this.joinMessages = messageConfig.showJoinMessages();
+        this.usernames = messageConfig.showUsernames();
+        this.timestamps = messageConfig.showTimestamps();
+        this.hideEmptyBorder = messageConfig.isHideEmptyBorder();
+        this.hideEmptyBackground = messageConfig.isHideEmptyBackground();
+
+        this.animationEnabled = emojiConfig.isAnimationEnabled();
+        this.emojiScaleToLine = emojiConfig.isEmojiScaleToLine();
+        this.badgeScaleToLine = emojiConfig.isBadgeScaleToLine();
+        this.badgeHeightOffset = emojiConfig.getBadgeHeightOffset();
+        this.emojiScale = emojiConfig.getEmojiScale();
+        this.badgeScale = emojiConfig.getBadgeScale();
+        this.displayStrategy = emojiConfig.getDisplayStrategy();
+    }
+
+    /**
+     * Get the generation of the font configuration this snapshot was taken of, so anything laid out with the font
+     * values of a snapshot can tell whether it was laid out with the same values as another
+     *
+     * @return fontGeneration
+     */
+    public long getFontGeneration()
+    {
+        return fontGeneration;
+    }
+
+    public float getFontScale()
+    {
+        return fontScale;
+    }
+
+    public float getBorderScale()
+    {
+        return borderScale;
+    }
+
+    public int getBorderInsetX()
+    {
+        return borderInsetX;
+    }
+
+    public int getBorderInsetY()
+    {
+        return borderInsetY;
+    }
+
+    public int getBaselineOffset()
+    {
+        return baselineOffset;
+    }
+
+    public char getUnknownChar()
+    {
+        return unknownChar;
+    }
+
+    public boolean isExtendedCharEnabled()
+    {
+        return extendedCharEnabled;
+    }
+
+    public int getLineSpacing()
+    {
+        return lineSpacing;
+    }
+
+    public int getCharSpacing()
+    {
+        return charSpacing;
+    }
+
+    public int getMessageSpacing()
+    {
+        return messageSpacing;
+    }
+
+    public FontType getFontType()
+    {
+        return fontType;
+    }
+
+    public boolean isChatFromBottom()
+    {
+        return chatFromBottom;
+    }
+
+    public boolean isReverseScrolling()
+    {
+        return reverseScrolling;
+    }
+
+    public boolean isAntiAlias()
+    {
+        return antiAlias;
+    }
+
+    public boolean isChromaEnabled()
+    {
+        return chromaEnabled;
+    }
+
+    public boolean isChromaInvert()
+    {
+        return chromaInvert;
+    }
+
+    public int getChromaLeft()
+    {
+        return chromaLeft;
+    }
+
+    public int getChromaTop()
+    {
+        return chromaTop;
+    }
+
+    public int getChromaRight()
+    {
+        return chromaRight;
+    }
+
+    public int getChromaBottom()
+    {
+        return chromaBottom;
+    }
+
+    public int getChromaCornerRadius()
+    {
+        return chromaCornerRadius;
+    }
+
+    public Color getBgColor()
+    {
+        return bgColor;
+    }
+
+    public Color getFgColor()
+    {
+        return fgColor;
+    }
+
+    public Color getBorderColor()
+    {
+        return borderColor;
+    }
+
+    public Color getHighlight()
+    {
+        return highlight;
+    }
+
+    public Color getChromaColor()
+    {
+        return chromaColor;
+    }
+
+    /**
+     * Get the number of colors in the palette
+     *
+     * @return palette size
+     */
+    public int getPaletteSize()
+    {
+        return palette.length;
+    }
+
+    /**
+     * Get the color at the specified index of the palette
+     *
+     * @param index
+     * @return color
+     */
+    public Color getPaletteColor(int index)
+    {
+        return palette[index];
+    }
+
+    public boolean isColorUsername()
+    {
+        return colorUsername;
+    }
+
+    public boolean isColorTimestamp()
+    {
+        return colorTimestamp;
+    }
+
+    public boolean isColorMessage()
+    {
+        return colorMessage;
+    }
+
+    public boolean isColorJoin()
+    {
+        return colorJoin;
+    }
+
+    public boolean isUseTwitchColors()
+    {
+        return useTwitchColors;
+    }
+
+    public boolean isQuantizeTwitchColors()
+    {
+        return quantizeTwitchColors;
+    }
+
+    public int getTintCacheSize()
+    {
+        return tintCacheSize;
+    }
+
+    public boolean showJoinMessages()
+    {
+        return joinMessages;
+    }
+
+    public boolean showUsernames()
+    {
+        return usernames;
+    }
+
+    public boolean showTimestamps()
+    {
+        return timestamps;
+    }
+
+    public boolean isHideEmptyBorder()
+    {
+        return hideEmptyBorder;
+    }
+
+    public boolean isHideEmptyBackground()
+    {
+        return hideEmptyBackground;
+    }
+
+    public boolean isAnimationEnabled()
+    {
+        return animationEnabled;
+    }
+
+    public boolean isEmojiScaleToLine()
+    {
+        return emojiScaleToLine;
+    }
+
+    public boolean isBadgeScaleToLine()
+    {
+        return badgeScaleToLine;
+    }
+
+    public int getBadgeHeightOffset()
+    {
+        return badgeHeightOffset;
+    }
+
+    public int getEmojiScale()
+    {
+        return emojiScale;
+    }
+
+    public int getBadgeScale()
+    {
+        return badgeScale;
+    }
+
+    public EmojiLoadingDisplayStragegy getDisplayStrategy()
+    {
+        return displayStrategy;
+    }
+}
@@ -4,6 +4,7 @@ import java.net.MalformedURLException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 
@@ -55,7 +56,8 @@ public class EmojiManager
 
     /**
      * V1 Twitch emotes loaded whenever a loaded on the fly via the emote ID on the IRC post tags' emote ID. These
-     * aren't ever lazy loaded because they are only loaded on the fly when used.
+     * aren't ever lazy loaded because they are only loaded on the fly when used. Concurrent, because they're added
+     * while messages are parsed on several threads at once.
      */
     private Map<String, LazyLoadEmoji> emojiById;
 
@@ -75,7 +77,7 @@ public class EmojiManager
         {
             preloadedEmoji.put(type, new TypedEmojiMap(type));
         }
-        emojiById = new HashMap<String, LazyLoadEmoji>();
+        emojiById = new ConcurrentHashMap<String, LazyLoadEmoji>();
     }
 
     /**
@@ -141,6 +143,9 @@ public class EmojiManager
     }
 
     /**
+     * Add the V1 Twitch emoji for the specified ID, unless another thread parsing a message has just added it, in which
+     * case that one is returned instead
+     * 
      * @param emojiId
      * @param word
      * @param emojiConfig
@@ -152,8 +157,8 @@ public class EmojiManager
         logger.trace("Loading unmapped emote from emote ID " + emojiId);
         final String emoteUrl = EmojiApiLoader.getTwitchEmoteV2Url(emojiId);
         LazyLoadEmoji emoji = new LazyLoadEmoji(word, emoteUrl, EmojiType.TWITCH_V1);
-        emojiById.put(emojiId, emoji);
-        return emoji;
+        final LazyLoadEmoji existing = emojiById.putIfAbsent(emojiId, emoji);
+        return existing == null ? emoji : existing;
     }
 
     /**
@@ -177,8 +182,7 @@ public class EmojiManager
                 {
                     logger.trace("Loading replacement FFZ emote for " + word);
                     emoji = new LazyLoadEmoji(word, FFZ_REPLACEMENT_EMOTE_URLS.get(emojiId), EmojiType.FRANKERFACEZ_REPLACEMENT);
-                    tem.put(getFfzReplacementKey(emojiId), emoji);
-                    return emoji;
+                    return tem.putIfAbsent(getFfzReplacementKey(emojiId), emoji);
                 }
                 catch (MalformedURLException e)
                 {
@@ -1,10 +1,10 @@
 package com.glitchcog.fontificator.emoji;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.glitchcog.fontificator.config.ConfigEmoji;
 
@@ -17,6 +17,9 @@ import com.glitchcog.fontificator.config.ConfigEmoji;
  * This separation is to permit the speedier access of emoji keyed off of words before checking through all the regular
  * expression keys, which takes longer because each key must be accessed and compared as a regular expression.<br />
  * <br />
+ * Messages are parsed on several threads at once, and parsing a message can add emoji it comes across that weren't
+ * loaded ahead of time, so both maps are concurrent.<br />
+ * <br />
  * 
  * @author Matt Yanos
  */
@@ -31,8 +34,8 @@ public class TypedEmojiMap
     public TypedEmojiMap(EmojiType type)
     {
         this.type = type;
-        normalMap = new HashMap<String, LazyLoadEmoji>();
-        regexMap = new HashMap<String, LazyLoadEmoji>();
+        normalMap = new ConcurrentHashMap<String, LazyLoadEmoji>();
+        regexMap = new ConcurrentHashMap<String, LazyLoadEmoji>();
     }
 
     /**
@@ -67,7 +70,7 @@ public class TypedEmojiMap
      */
     public LazyLoadEmoji getEmoji(String testKey, ConfigEmoji config)
     {
-        if (config != null && !config.isTypeEnabledAndLoaded(type))
+        if (testKey == null || (config != null && !config.isTypeEnabledAndLoaded(type)))
         {
             return null;
         }
@@ -91,15 +94,40 @@ public class TypedEmojiMap
 
     public LazyLoadEmoji put(String key, LazyLoadEmoji value)
     {
+        final Map<String, LazyLoadEmoji> map;
         if (isRegularExpression(key))
         {
             key = fixRegularExpression(key);
-            return regexMap.put(key, value);
+            map = regexMap;
+        }
+        else
+        {
+            map = normalMap;
+        }
+        // The concurrent maps can't hold a null emoji, but having none is the same as not having one at all
+        return value == null ? map.remove(key) : map.put(key, value);
+    }
+
+    /**
+     * Put the specified emoji in the map, unless there's already one for the key, in which case that one is kept. Used
+     * to add emoji while messages are being parsed, where two threads may come across the same new emoji at once.
+     * 
+     * @param key
+     * @param value
+     * @return the emoji in the map for the key, either the one already there or the specified one
+     */
+    public LazyLoadEmoji putIfAbsent(String key, LazyLoadEmoji value)
+    {
+        final LazyLoadEmoji existing;
+        if (isRegularExpression(key))
+        {
+            existing = regexMap.putIfAbsent(fixRegularExpression(key), value);
         }
         else
         {
-            return normalMap.put(key, value);
+            existing = normalMap.putIfAbsent(key, value);
         }
+        return existing == null ? value : existing;
     }
 
     public Collection<String> keySet()
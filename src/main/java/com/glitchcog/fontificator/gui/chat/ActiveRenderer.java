@@ -0,0 +1,281 @@
+package com.glitchcog.fontificator.gui.chat;
+
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Toolkit;
+import java.awt.image.VolatileImage;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Draws the chat on a dedicated thread instead of on the event dispatch thread. Each frame is drawn into a
+ * VolatileImage, which is then copied to the screen, so the chat keeps drawing while the event dispatch thread is busy
+ * with the control window. Frames are only drawn when something has requested one, and no more often than the target
+ * frame rate, with any requests that come in while waiting merged into the next frame.
+ *
+ * @author Matt Yanos
+ */
+public class ActiveRenderer implements Runnable
+{
+    private static final Logger logger = Logger.getLogger(ActiveRenderer.class);
+
+    /**
+     * The most frames per second that will be drawn
+     */
+    public static final int TARGET_FRAME_RATE = 60;
+
+    private static final long FRAME_PERIOD_NANOS = 1000000000L / TARGET_FRAME_RATE;
+
+    private final ChatPanel chat;
+
+    /**
+     * The thread the frames are drawn on, or null when stopped
+     */
+    private Thread thread;
+
+    private volatile boolean running;
+
+    /**
+     * Whether something has changed since the last frame was drawn
+     */
+    private boolean frameRequested;
+
+    /**
+     * The last frame drawn, copied to the screen after drawing and whenever the event dispatch thread paints the chat
+     */
+    private VolatileImage frame;
+
+    /**
+     * Held while the frame is drawn or copied, so the event dispatch thread never copies a partly drawn frame and never
+     * waits for one to be finished
+     */
+    private final ReentrantLock frameLock;
+
+    private volatile long frameCount;
+
+    private long mergedCount;
+
+    public ActiveRenderer(ChatPanel chat)
+    {
+        this.chat = chat;
+        this.frameLock = new ReentrantLock();
+    }
+
+    public boolean isRunning()
+    {
+        return running;
+    }
+
+    /**
+     * Start the render thread if it isn't already running
+     */
+    public synchronized void start()
+    {
+        if (running)
+        {
+            return;
+        }
+        running = true;
+        frameRequested = true;
+        thread = new Thread(this, "Chat Renderer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the render thread. The frame it is drawing, if any, is finished first.
+     */
+    public synchronized void stop()
+    {
+        running = false;
+        thread = null;
+        notifyAll();
+    }
+
+    /**
+     * Request that a frame be drawn. Any number of requests made before the render thread gets to it are drawn as one
+     * frame.
+     */
+    public synchronized void requestFrame()
+    {
+        if (frameRequested)
+        {
+            mergedCount++;
+        }
+        frameRequested = true;
+        notifyAll();
+    }
+
+    @Override
+    public void run()
+    {
+        long nextFrameTime = System.nanoTime();
+        while (waitForRequest())
+        {
+            // Wait out the rest of the frame period, so requests made in the meantime are merged into this frame
+            final long sleepNanos = nextFrameTime - System.nanoTime();
+            if (sleepNanos > 0)
+            {
+                try
+                {
+                    Thread.sleep(sleepNanos / 1000000L, (int) (sleepNanos % 1000000L));
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            nextFrameTime = System.nanoTime() + FRAME_PERIOD_NANOS;
+
+            if (!isCurrentThread())
+            {
+                return;
+            }
+
+            try
+            {
+                drawFrame();
+            }
+            catch (Exception e)
+            {
+                logger.error("Unable to draw chat frame", e);
+            }
+        }
+    }
+
+    /**
+     * Wait until a frame is requested or the renderer is stopped
+     * 
+     * @return whether a frame should be drawn
+     */
+    private synchronized boolean waitForRequest()
+    {
+        while (isCurrentThread() && !frameRequested)
+        {
+            try
+            {
+                wait();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        frameRequested = false;
+        return isCurrentThread();
+    }
+
+    /**
+     * Get whether the calling thread is the one the renderer is currently running on, which is false once the renderer
+     * has been stopped, even if it has since been started again on a new thread
+     * 
+     * @return current
+     */
+    private synchronized boolean isCurrentThread()
+    {
+        return running && thread == Thread.currentThread();
+    }
+
+    /**
+     * Draw the chat into the frame image and copy it to the screen, drawing it again if the image's contents are lost
+     * partway through
+     */
+    private void drawFrame()
+    {
+        final int width = chat.getWidth();
+        final int height = chat.getHeight();
+        final GraphicsConfiguration gc = chat.getGraphicsConfiguration();
+        if (!chat.isShowing() || gc == null || width <= 0 || height <= 0)
+        {
+            return;
+        }
+
+        frameLock.lock();
+        try
+        {
+            do
+            {
+                if (frame == null || frame.getWidth() != width || frame.getHeight() != height || frame.validate(gc) == VolatileImage.IMAGE_INCOMPATIBLE)
+                {
+                    if (frame != null)
+                    {
+                        frame.flush();
+                    }
+                    frame = gc.createCompatibleVolatileImage(width, height);
+                }
+
+                Graphics2D frameGraphics = frame.createGraphics();
+                try
+                {
+                    chat.drawChat(frameGraphics);
+                }
+                finally
+                {
+                    frameGraphics.dispose();
+                }
+
+                Graphics screenGraphics = chat.getGraphics();
+                if (screenGraphics != null)
+                {
+                    try
+                    {
+                        screenGraphics.drawImage(frame, 0, 0, null);
+                    }
+                    finally
+                    {
+                        screenGraphics.dispose();
+                    }
+                    Toolkit.getDefaultToolkit().sync();
+                }
+            }
+            while (frame.contentsLost());
+        }
+        finally
+        {
+            frameLock.unlock();
+        }
+
+        frameCount++;
+    }
+
+    /**
+     * Copy the last frame drawn onto the specified graphics object, for when the event dispatch thread needs the chat
+     * painted, and request a new frame in case the last one is out of date or missing
+     * 
+     * @param g
+     */
+    public void paintLastFrame(Graphics g)
+    {
+        // If a frame is being drawn right now, it will be copied to the screen when it's done
+        if (frameLock.tryLock())
+        {
+            try
+            {
+                if (frame != null && !frame.contentsLost())
+                {
+                    g.drawImage(frame, 0, 0, null);
+                }
+            }
+            finally
+            {
+                frameLock.unlock();
+            }
+        }
+        requestFrame();
+    }
+
+    /**
+     * Get a summary of how many frames have been drawn and how many requests were merged into them, to be displayed for
+     * debugging
+     * 
+     * @return statistics
+     */
+    public synchronized String getStatistics()
+    {
+        return "Render thread: " + frameCount + " frames, " + mergedCount + " requests merged";
+    }
+}
@@ -0,0 +1,223 @@
+package com.glitchcog.fontificator.gui.chat;
+
+import java.awt.AlphaComposite;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Point;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+
+import com.glitchcog.fontificator.sprite.Sprite;
+
+/**
+ * The border around the chat tiled out once into its own image, so drawing the border is a single image draw instead of
+ * one scaled sprite draw for every cell of the border grid. The image is only tiled out again when something that
+ * changes how the border looks changes: the size of the chat, the border sprite, its scale, its color, or the debug
+ * grid drawn over it.
+ *
+ * @author Matt Yanos
+ */
+public class BorderSurface
+{
+    /**
+     * The tiled out border, transparent everywhere the border isn't
+     */
+    private BufferedImage surface;
+
+    /**
+     * The border sprite the surface was tiled out from, which is replaced whenever the border file changes
+     */
+    private Sprite border;
+
+    private int width;
+
+    private int height;
+
+    private int gridWidth;
+
+    private int gridHeight;
+
+    private Point offset;
+
+    private float scale;
+
+    private Color color;
+
+    private boolean debug;
+
+    private Color debugColor;
+
+    /**
+     * The number of times the border was drawn using the surface as it was
+     */
+    private long hitCount;
+
+    /**
+     * The number of times the surface had to be tiled out again before the border could be drawn
+     */
+    private long missCount;
+
+    /**
+     * Draw the border, tiling out the surface again first if anything about the border has changed since the last time
+     * it was drawn
+     *
+     * @param g2d
+     * @param gc
+     *            The graphics configuration of the chat panel, used to make an image suited to the display, or null if
+     *            the chat isn't displayed yet
+     * @param border
+     * @param width
+     *            The width of the chat panel
+     * @param height
+     *            The height of the chat panel
+     * @param gridWidth
+     * @param gridHeight
+     * @param offset
+     * @param scale
+     * @param color
+     * @param debug
+     * @param debugColor
+     */
+    public void draw(Graphics2D g2d, GraphicsConfiguration gc, Sprite border, int width, int height, int gridWidth, int gridHeight, Point offset, float scale, Color color, boolean debug, Color debugColor)
+    {
+        if (scale <= 0.0f || width <= 0 || height <= 0)
+        {
+            return;
+        }
+
+        if (isValid(border, width, height, gridWidth, gridHeight, offset, scale, color, debug, debugColor))
+        {
+            hitCount++;
+        }
+        else
+        {
+            missCount++;
+            if (surface == null || surface.getWidth() != width || surface.getHeight() != height)
+            {
+                surface = gc == null ? new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE) : gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+            }
+
+            Graphics2D surfaceGraphics = surface.createGraphics();
+            surfaceGraphics.setRenderingHints(g2d.getRenderingHints());
+            surfaceGraphics.setComposite(AlphaComposite.Clear);
+            surfaceGraphics.fillRect(0, 0, width, height);
+            surfaceGraphics.setComposite(AlphaComposite.SrcOver);
+            tile(surfaceGraphics, border, gridWidth, gridHeight, offset, scale, color, debug, debugColor);
+            surfaceGraphics.dispose();
+
+            this.border = border;
+            this.width = width;
+            this.height = height;
+            this.gridWidth = gridWidth;
+            this.gridHeight = gridHeight;
+            this.offset = new Point(offset);
+            this.scale = scale;
+            this.color = color;
+            this.debug = debug;
+            this.debugColor = debugColor;
+        }
+
+        g2d.drawImage(surface, 0, 0, null);
+    }
+
+    private boolean isValid(Sprite border, int width, int height, int gridWidth, int gridHeight, Point offset, float scale, Color color, boolean debug, Color debugColor)
+    {
+        return surface != null && this.border == border && this.width == width && this.height == height && this.gridWidth == gridWidth && this.gridHeight == gridHeight && offset.equals(this.offset) && this.scale == scale && color.equals(this.color) && this.debug == debug && (!debug || debugColor.equals(this.debugColor));
+    }
+
+    /**
+     * Tile out each cell of the border grid, using the corner frames of the border sprite for the corners, the edge
+     * frames for the edges, and the middle frame for everything in between
+     *
+     * @param g2d
+     * @param border
+     * @param gridWidth
+     * @param gridHeight
+     * @param offset
+     * @param scale
+     * @param color
+     * @param debug
+     * @param debugColor
+     */
+    private static void tile(Graphics2D g2d, Sprite border, int gridWidth, int gridHeight, Point offset, float scale, Color color, boolean debug, Color debugColor)
+    {
+        if (debug)
+        {
+            g2d.setColor(debugColor);
+        }
+
+        for (int r = 0; r < gridHeight; r++)
+        {
+            for (int c = 0; c < gridWidth; c++)
+            {
+                int pixelX = c * border.getSpriteDrawWidth(scale) + offset.x;
+                int pixelY = r * border.getSpriteDrawHeight(scale) + offset.y;
+
+                if (r == 0) // Top row
+                {
+                    if (c == 0) // Top left
+                    {
+                        border.draw(g2d, pixelX, pixelY, 0, scale, color);
+                    }
+                    else if (c == gridWidth - 1) // Top right
+                    {
+                        border.draw(g2d, pixelX, pixelY, 2, scale, color);
+                    }
+                    else
+                    // Top middle
+                    {
+                        border.draw(g2d, pixelX, pixelY, 1, scale, color);
+                    }
+                }
+                else if (r == gridHeight - 1) // Bottom row
+                {
+                    if (c == 0) // Bottom left
+                    {
+                        border.draw(g2d, pixelX, pixelY, 6, scale, color);
+                    }
+                    else if (c == gridWidth - 1) // Bottom right
+                    {
+                        border.draw(g2d, pixelX, pixelY, 8, scale, color);
+                    }
+                    else
+                    // Bottom middle
+                    {
+                        border.draw(g2d, pixelX, pixelY, 7, scale, color);
+                    }
+                }
+                else
+                // Middle
+                {
+                    if (c == 0) // Middle left
+                    {
+                        border.draw(g2d, pixelX, pixelY, 3, scale, color);
+                    }
+                    else if (c == gridWidth - 1) // Middle right
+                    {
+                        border.draw(g2d, pixelX, pixelY, 5, scale, color);
+                    }
+                    else
+                    // Middle middle
+                    {
+                        border.draw(g2d, pixelX, pixelY, 4, scale, color);
+                    }
+                }
+                if (debug)
+                {
+                    g2d.drawRect(pixelX, pixelY, (int) (border.getSpriteWidth() * scale), (int) (border.getSpriteHeight() * scale));
+                }
+            }
+        }
+    }
+
+    public long getHitCount()
+    {
+        return hitCount;
+    }
+
+    public long getMissCount()
+    {
+        return missCount;
+    }
+}
@@ -5,18 +5,22 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.awt.font.FontRenderContext;
+import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import org.apache.log4j.Logger;
 
@@ -28,14 +32,16 @@ import com.glitchcog.fontificator.config.ConfigEmoji;
 import com.glitchcog.fontificator.config.ConfigFont;
 import com.glitchcog.fontificator.config.ConfigMessage;
 import com.glitchcog.fontificator.config.FontificatorProperties;
+import com.glitchcog.fontificator.config.RenderSnapshot;
 import com.glitchcog.fontificator.emoji.EmojiManager;
-import com.glitchcog.fontificator.gui.chat.clock.MessageExpirer;
-import com.glitchcog.fontificator.gui.chat.clock.MessageProgressor;
+import com.glitchcog.fontificator.gui.chat.clock.FrameScheduler;
 import com.glitchcog.fontificator.gui.controls.panel.ControlPanelDebug;
 import com.glitchcog.fontificator.gui.controls.panel.ControlPanelFont;
 import com.glitchcog.fontificator.gui.controls.panel.MessageCensorPanel;
+import com.glitchcog.fontificator.sprite.MessageLayout;
 import com.glitchcog.fontificator.sprite.Sprite;
 import com.glitchcog.fontificator.sprite.SpriteFont;
+import com.glitchcog.fontificator.sprite.TintCache;
 
 /**
  * This panel contains the entire visualization of the chat, so it handles all the drawing. It also handles scrolling
@@ -52,27 +58,61 @@ public class ChatPanel extends JPanel implements MouseWheelListener
     /**
      * The cache of messages to be displayed
      */
-    private ConcurrentLinkedQueue<Message> messages;
+    private MessageStore messages;
+
+    /**
+     * The messages in the cache that can be displayed right now. All changes to the cache go through this.
+     */
+    private DisplayableMessages displayable;
 
     private MessageCensorPanel censor;
 
     /**
-     * Contains the timed task and a reference to this chat to be used to progress rolling out new messages at the
-     * appropriate speed
+     * Rolls out new messages at the appropriate speed, and repaints the chat at most once a frame for that, for messages
+     * expiring, and for animated emoji
+     */
+    private FrameScheduler scheduler;
+
+    /**
+     * Parses new messages on worker threads before they are added to the chat, so drawing them doesn't have to
      */
-    private MessageProgressor messageProgressor;
+    private MessageParser parser;
 
     /**
-     * Contains the timed task and a reference to this chat to be used to refresh periodically in case any messages have
-     * been expired
+     * Parses the text of all the messages again in the background when the message or emoji configuration changes
      */
-    private MessageExpirer messageExpirer;
+    private MessageReparser reparser;
 
     /**
      * The sprite used to draw the border around the chat, to be displayed if the border scale is greater than zero
      */
     private Sprite border;
 
+    /**
+     * The border tiled out into a single image, so it doesn't need to be tiled out every time the backbuffer is redrawn
+     */
+    private BorderSurface borderSurface;
+
+    /**
+     * The system font sized to fit the line height, used for extended characters, as of the last time it was sized
+     */
+    private Font extendedFont;
+
+    /**
+     * The name of the font the extended font was sized from
+     */
+    private String extendedFontName;
+
+    /**
+     * The line height the extended font was sized to fit
+     */
+    private float extendedFontTargetHeight;
+
+    /**
+     * The rendering context the extended font was sized in, which affects how tall the font measures
+     */
+    private FontRenderContext extendedFontContext;
+
     /**
      * The number of lines for all the messages in the chat buffer. This is not the number of messages, but the number
      * of lines the messages will take up once drawn.
@@ -84,6 +124,104 @@ public class ChatPanel extends JPanel implements MouseWheelListener
      */
     private int onScreenLineCount;
 
+    /**
+     * How far the messages can go to the right before wrapping to the next line, as of the last time the chat was placed
+     */
+    private int lineWrapLength;
+
+    /**
+     * The x coordinate of the left edge of the messages, as of the last time the chat was placed
+     */
+    private int leftEdge;
+
+    /**
+     * The y-inset on the top plus the height of the top part of the border, which is where drawing lines starts, as of
+     * the last time the chat was placed
+     */
+    private int borderEdgeThickness;
+
+    /**
+     * The y coordinate lines are drawn up to, as of the last time the chat was placed
+     */
+    private int botLimit;
+
+    /**
+     * The y coordinate of the top of each placed message, as of the last time the chat was placed
+     */
+    private int[] messageY;
+
+    /**
+     * The messages placed by the last paint, which are only the ones that are at least partly on screen, in the same
+     * order as messageY, so the clocks can tell which part of the chat they need to repaint without placing everything
+     * again
+     */
+    private volatile List<Message> placedMessages;
+
+    /**
+     * The heights of all the displayable messages, so the ones on screen can be found without measuring the rest
+     */
+    private MessageHeightIndex heightIndex;
+
+    /**
+     * The configuration values the chat is drawn with, copied out of the configuration the next time the chat is
+     * painted after any change
+     */
+    private volatile RenderSnapshot snapshot;
+
+    /**
+     * Whether the configuration might have changed since the snapshot was taken
+     */
+    private volatile boolean snapshotDirty;
+
+    /**
+     * Draws the chat on its own thread when active rendering is on
+     */
+    private ActiveRenderer activeRenderer;
+
+    /**
+     * Held while the chat is drawn and while anything the drawing depends on outside of the configuration, like the
+     * font, the border, or the scroll offset, is changed, because with active rendering on the chat is not drawn on the
+     * event dispatch thread
+     */
+    private final Object renderLock = new Object();
+
+    /**
+     * Offscreen image of the background, the border, and every completely drawn message, so a frame in which only the
+     * message currently being rolled out has changed doesn't need to draw everything else again
+     */
+    private BufferedImage backbuffer;
+
+    /**
+     * Set whenever the chat is repainted for a reason that might change how the contents of the backbuffer look
+     */
+    private volatile boolean backbufferDirty;
+
+    /**
+     * The completely drawn messages that are in the backbuffer
+     */
+    private List<Message> backbufferMessages;
+
+    /**
+     * Where the messages in the backbuffer were drawn
+     */
+    private int[] backbufferMessageY;
+
+    /**
+     * The bottom limit used to draw the backbuffer
+     */
+    private int backbufferBotLimit;
+
+    /**
+     * The scroll offset used to draw the backbuffer
+     */
+    private int backbufferScrollOffset;
+
+    /**
+     * Whether there were no messages to draw at all when the backbuffer was drawn, which determines whether an empty
+     * background or border is hidden
+     */
+    private boolean backbufferEmpty;
+
     /**
      * Configuration for the font and the border
      */
@@ -152,11 +290,16 @@ public class ChatPanel extends JPanel implements MouseWheelListener
         loaded = false;
         lineCount = Integer.MAX_VALUE;
         onScreenLineCount = 0;
-        messages = new ConcurrentLinkedQueue<Message>();
+        messages = new MessageStore();
+        displayable = new DisplayableMessages(messages);
 
         emojiManager = new EmojiManager();
-        messageProgressor = new MessageProgressor(this);
-        messageExpirer = new MessageExpirer(this);
+        borderSurface = new BorderSurface();
+        heightIndex = new MessageHeightIndex();
+        activeRenderer = new ActiveRenderer(this);
+        scheduler = new FrameScheduler(this);
+        parser = new MessageParser(this);
+        reparser = new MessageReparser(this);
     }
 
     /**
@@ -198,6 +341,8 @@ public class ChatPanel extends JPanel implements MouseWheelListener
 
         // This indicates that the chat panel is ready to be drawn
         loaded = true;
+
+        scheduler.start();
     }
 
     /**
@@ -216,86 +361,437 @@ public class ChatPanel extends JPanel implements MouseWheelListener
         this.censor = censor;
     }
 
+    /**
+     * Set the font on the graphics object to the system font sized to fit in the line height, for drawing extended
+     * characters. Finding that size means trying every size until one doesn't fit, so it is only done again when the
+     * font, the line height, or the rendering context changes.
+     * 
+     * @param g2d
+     */
+    private void setExtendedFont(Graphics2D g2d)
+    {
+        final String fontName = g2d.getFont().getName();
+        final float targetHeight = (font.getFontHeight() - snapshot.getBaselineOffset()) * snapshot.getFontScale();
+        final FontRenderContext context = g2d.getFontRenderContext();
+
+        if (extendedFont == null || !fontName.equals(extendedFontName) || targetHeight != extendedFontTargetHeight || !context.equals(extendedFontContext))
+        {
+            // Fits in the line height.
+            boolean stillFits = true;
+            int fontSize = 0;
+            while (stillFits)
+            {
+                fontSize++;
+                g2d.setFont(new Font(fontName, Font.PLAIN, fontSize));
+                stillFits = targetHeight > g2d.getFontMetrics().getStringBounds("A", 0, 1, g2d).getHeight();
+            }
+
+            logger.trace("Calulated font size: " + fontSize);
+
+            extendedFont = g2d.getFont();
+            extendedFontName = fontName;
+            extendedFontTargetHeight = targetHeight;
+            extendedFontContext = context;
+        }
+        else
+        {
+            g2d.setFont(extendedFont);
+        }
+    }
+
     @Override
     public void paint(Graphics g)
     {
-        if (!isLoaded())
+        if (activeRenderer.isRunning())
+        {
+            // The render thread does the drawing, so just put its last frame back up
+            activeRenderer.paintLastFrame(g);
+        }
+        else
+        {
+            drawChat(g);
+        }
+    }
+
+    /**
+     * Draw the whole chat onto the specified graphics object, whether it's for the screen or for a screenshot. This is
+     * called by paint on the event dispatch thread, or by the render thread if active rendering is on.
+     * 
+     * @param g
+     */
+    public void drawChat(Graphics g)
+    {
+        synchronized (renderLock)
+        {
+            render((Graphics2D) g);
+        }
+    }
+
+    private void render(Graphics2D g2d)
+    {
+        if (!isLoaded() || getWidth() <= 0 || getHeight() <= 0)
         {
             return;
         }
 
-        Graphics2D g2d = (Graphics2D) g;
+        // Everything below is drawn with the same configuration values, even if a control panel changes them midway
+        if (snapshot == null || snapshotDirty)
+        {
+            snapshotDirty = false;
+            snapshot = new RenderSnapshot(fontConfig, chatConfig, colorConfig, messageConfig, emojiConfig);
+        }
+        final RenderSnapshot snapshot = this.snapshot;
 
-        if (chatConfig.isAntiAlias())
+        if (snapshot.isAntiAlias())
         {
             g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
             g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
         }
 
-        // Fits in the line height.
-        boolean stillFits = true;
-        int fontSize = 0;
-        while (stillFits)
+        setExtendedFont(g2d);
+
+        // Any config change that moves characters around means the layouts stored on the messages are no longer valid
+        font.checkLayoutVersion(snapshot);
+
+        // A change to how the text is parsed keeps the old text on screen until all of it has been parsed again
+        reparser.check(messages, emojiManager, messageConfig, emojiConfig);
+
+        TintCache.setBudget(snapshot.getTintCacheSize() * 1024L * 1024L);
+
+        // Only the messages that are completely drawn and the ones currently being drawn. Expired messages don't need
+        // to be checked for, because the scheduler evicts them from the cache as soon as they expire.
+        final List<Message> drawMessages = displayable.getMessages(censorConfig.isCensorshipEnabled());
+
+        // This offset represents how far inward in the x and y directions the messages should be drawn
+        Point offset = new Point();
+
+        // If border scale is zero, just skip this. The drawBorder method won't draw a zero scale border, but if these
+        // calculations are attempted with a zero scale it will throw a divide by zero exception
+        // Also check if no messages are visible whether the border should be hidden
+        final float borderScale = snapshot.getBorderScale();
+        final boolean borderVisible = borderScale > 0.0f && !(snapshot.isHideEmptyBorder() && drawMessages.isEmpty());
+        int borderGridWidth = 0;
+        int borderGridHeight = 0;
+        if (borderVisible)
         {
-            fontSize++;
-            g2d.setFont(new Font(g2d.getFont().getName(), Font.PLAIN, fontSize));
-            stillFits = (font.getFontHeight() - fontConfig.getBaselineOffset()) * fontConfig.getFontScale() > g2d.getFontMetrics().getStringBounds("A", 0, 1, g2d).getHeight();
+            borderGridWidth = getWidth() / border.getSpriteDrawWidth(borderScale);
+            borderGridHeight = getHeight() / border.getSpriteDrawHeight(borderScale);
+
+            final int leftOffset = (getWidth() - borderGridWidth * border.getSpriteDrawWidth(borderScale)) / 2;
+            final int topOffset = (getHeight() - borderGridHeight * border.getSpriteDrawHeight(borderScale)) / 2;
+
+            offset = new Point(leftOffset, topOffset);
         }
 
-        logger.trace("Calulated font size: " + fontSize);
+        final List<Message> placed = placeChat(g2d, drawMessages, offset);
 
-        List<Message> drawMessages = new ArrayList<Message>();
+        // Only the messages from the first one being rolled out onward change from one tick of the rollout to the next.
+        // Everything before that is drawn from the backbuffer, which only needs to be redrawn if the messages under it
+        // have changed or moved
+        final int settledCount = getSettledCount(placed);
+        final List<Message> settledMessages = placed.subList(0, settledCount);
+        final int[] settledMessageY = Arrays.copyOf(messageY, settledCount);
 
-        // Make a copy of the actual cache that only includes the messages that are completely drawn and possibly the
-        // one message currently being drawn
-        long drawTime = System.currentTimeMillis();
-        for (Message msg : messages)
+        if (!isBackbufferValid(settledMessages, settledMessageY, drawMessages.isEmpty()))
         {
-            final boolean censored = censorConfig.isCensorshipEnabled() && msg.isCensored();
-            final boolean expired = messageConfig.isMessageExpirable() && msg.getAge(drawTime) > messageConfig.getExpirationTime();
-            if (!censored && !expired)
+            backbufferDirty = false;
+
+            if (backbuffer == null || backbuffer.getWidth() != getWidth() || backbuffer.getHeight() != getHeight())
             {
-                drawMessages.add(msg);
+                GraphicsConfiguration gc = getGraphicsConfiguration();
+                backbuffer = gc == null ? new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB) : gc.createCompatibleImage(getWidth(), getHeight());
             }
-            if (!censored && !expired && !msg.isCompletelyDrawn())
+
+            Graphics2D bufferGraphics = backbuffer.createGraphics();
+            bufferGraphics.setRenderingHints(g2d.getRenderingHints());
+            bufferGraphics.setFont(g2d.getFont());
+
+            // Draws the background color and the chroma key border
+            if (snapshot.isHideEmptyBackground() && drawMessages.isEmpty())
             {
-                // No need to check any further messages because this is the one currently being rolled out
-                break;
+                // If the messages are empty and the background should be hidden, draw the chroma color regardless of whether it's enabled
+                bufferGraphics.setColor(snapshot.getChromaColor());
+                bufferGraphics.fillRect(0, 0, getWidth(), getHeight());
             }
+            else
+            {
+                drawBackgroundAndChroma(bufferGraphics);
+            }
+
+            if (borderVisible)
+            {
+                drawBorder(bufferGraphics, borderGridWidth, borderGridHeight, offset, snapshot.getBorderColor(), debugSettings.isDrawBorderGrid(), debugSettings.getBorderGridColor());
+            }
+
+            for (int i = 0; i < settledCount; i++)
+            {
+                drawChatMessage(bufferGraphics, placed, i);
+            }
+
+            bufferGraphics.dispose();
+
+            backbufferMessages = new ArrayList<Message>(settledMessages);
+            backbufferMessageY = settledMessageY;
+            backbufferBotLimit = botLimit;
+            backbufferScrollOffset = font.getLineScrollOffset();
+            backbufferEmpty = drawMessages.isEmpty();
         }
 
-        // Draws the background color and the chroma key border
-        if (messageConfig.isHideEmptyBackground() && drawMessages.isEmpty())
+        g2d.drawImage(backbuffer, 0, 0, null);
+
+        for (int i = settledCount; i < placed.size(); i++)
         {
-            // If the messages are empty and the background should be hidden, draw the chroma color regardless of whether it's enabled
-            g2d.setColor(colorConfig.getChromaColor());
-            g2d.fillRect(0, 0, getWidth(), getHeight());
+            drawChatMessage(g2d, placed, i);
+        }
+    }
+
+    /**
+     * Get the number of placed messages before the first one that isn't completely drawn
+     * 
+     * @param placed
+     * @return count
+     */
+    private static int getSettledCount(List<Message> placed)
+    {
+        for (int i = 0; i < placed.size(); i++)
+        {
+            if (!placed.get(i).isCompletelyDrawn())
+            {
+                return i;
+            }
+        }
+        return placed.size();
+    }
+
+    /**
+     * Get whether the backbuffer can be drawn as is, meaning nothing has invalidated it, the panel is the same size, and
+     * the same completely drawn messages would be drawn in the same places
+     * 
+     * @param settledMessages
+     * @param settledMessageY
+     * @param empty
+     *            Whether there are no messages at all to draw, including one being rolled out
+     * @return valid
+     */
+    private boolean isBackbufferValid(List<Message> settledMessages, int[] settledMessageY, boolean empty)
+    {
+        return !backbufferDirty && backbuffer != null && backbuffer.getWidth() == getWidth() && backbuffer.getHeight() == getHeight() && backbufferEmpty == empty && backbufferBotLimit == botLimit && backbufferScrollOffset == font.getLineScrollOffset() && Arrays.equals(backbufferMessageY, settledMessageY) && settledMessages.equals(backbufferMessages);
+    }
+
+    /**
+     * Make the specified change while no frame is being drawn, then repaint the chat to show it
+     * 
+     * @param change
+     */
+    void runBetweenFrames(Runnable change)
+    {
+        synchronized (renderLock)
+        {
+            change.run();
+        }
+        repaint();
+    }
+
+    /**
+     * Repaint the chat for any reason, meaning the backbuffer must be redrawn and the messages measured again because
+     * whatever prompted the repaint may have changed how the completely drawn messages, the border, or the background
+     * look
+     */
+    @Override
+    public void repaint()
+    {
+        backbufferDirty = true;
+        snapshotDirty = true;
+        if (heightIndex != null)
+        {
+            heightIndex.invalidate();
+        }
+        repaintMessages();
+    }
+
+    /**
+     * Repaint the chat because a message has been added, has progressed in its rollout, or may have expired, or because
+     * the chat has been scrolled. Changes like that are detected by the paint method itself, so the backbuffer is only
+     * redrawn and the messages are only measured again if needed.
+     */
+    public void repaintMessages()
+    {
+        if (activeRenderer != null && activeRenderer.isRunning())
+        {
+            activeRenderer.requestFrame();
         }
         else
         {
-            drawBackgroundAndChroma(g2d);
+            super.repaint();
         }
+    }
 
-        // This offset represents how far inward in the x and y directions the messages should be drawn
-        Point offset = new Point();
+    /**
+     * Turn active rendering on or off. When it's on, the chat is drawn on its own thread at up to
+     * {@link ActiveRenderer#TARGET_FRAME_RATE} frames per second instead of on the event dispatch thread.
+     * 
+     * @param activeRendering
+     */
+    public void setActiveRendering(boolean activeRendering)
+    {
+        if (activeRendering)
+        {
+            activeRenderer.start();
+        }
+        else if (activeRenderer.isRunning())
+        {
+            activeRenderer.stop();
+            repaint();
+        }
+    }
 
-        // If border scale is zero, just skip this. The drawBorder method won't draw a zero scale border, but if these
-        // calculations are attempted with a zero scale it will throw a divide by zero exception
-        // Also check if no messages are visible whether the border should be hidden
-        if (fontConfig.getBorderScale() > 0.0f && !(messageConfig.isHideEmptyBorder() && drawMessages.isEmpty()))
+    /**
+     * Repaint the chat because the draw cursor of the specified message has been moved forward. If the message is the
+     * one being rolled out and it still takes up the same number of lines, only the characters that were revealed are
+     * repainted. Otherwise the messages have moved around and the whole chat is repainted.
+     * 
+     * @param msg
+     * @param previousDrawCursor
+     *            The draw cursor of the message before it was moved forward
+     * @param drawCursor
+     *            The draw cursor of the message after it was moved forward
+     */
+    public void repaintRollout(final Message msg, final float previousDrawCursor, final float drawCursor)
+    {
+        if (activeRenderer.isRunning())
         {
-            final int gridWidth = getWidth() / border.getSpriteDrawWidth(fontConfig.getBorderScale());
-            final int gridHeight = getHeight() / border.getSpriteDrawHeight(fontConfig.getBorderScale());
+            // The render thread only redraws the message being rolled out anyway
+            repaintMessages();
+            return;
+        }
 
-            final int leftOffset = (getWidth() - gridWidth * border.getSpriteDrawWidth(fontConfig.getBorderScale())) / 2;
-            final int topOffset = (getHeight() - gridHeight * border.getSpriteDrawHeight(fontConfig.getBorderScale())) / 2;
+        // The placement of the messages is only ever updated on the event dispatch thread by the paint method
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Rectangle revealed = getRevealedBounds(msg, previousDrawCursor, drawCursor);
+                if (revealed == null)
+                {
+                    repaintMessages();
+                }
+                else
+                {
+                    repaintMessages(revealed);
+                }
+            }
+        });
+    }
 
-            offset = new Point(leftOffset, topOffset);
+    /**
+     * Repaint only the specified part of the chat, for the same reasons as repaintMessages
+     * 
+     * @param bounds
+     */
+    private void repaintMessages(Rectangle bounds)
+    {
+        Rectangle clipped = bounds.intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+        if (!clipped.isEmpty())
+        {
+            super.repaint(clipped.x, clipped.y, clipped.width, clipped.height);
+        }
+    }
 
-            drawBorder(g2d, gridWidth, gridHeight, offset, colorConfig.getBorderColor(), debugSettings.isDrawBorderGrid(), debugSettings.getBorderGridColor());
+    /**
+     * Get the part of the chat where the characters of the rolled out message between the two draw cursors are drawn
+     * 
+     * @param msg
+     * @param previousDrawCursor
+     * @param drawCursor
+     * @return bounds, or null if the whole chat needs to be repainted
+     */
+    private Rectangle getRevealedBounds(Message msg, float previousDrawCursor, float drawCursor)
+    {
+        List<Message> placed = placedMessages;
+        final int placedIndex = !isLoaded() || placed == null ? -1 : placed.indexOf(msg);
+        if (placedIndex < 0)
+        {
+            // The message wasn't already being rolled out on screen the last time the chat was painted
+            return null;
         }
 
-        drawChat(g2d, drawMessages, offset, debugSettings.isDrawTextGrid(), debugSettings.getTextGridColor());
+        MessageLayout layout = msg.getLayout();
+        if (layout == null || layout.isUnwrappable() || layout.getLineCount(previousDrawCursor) != layout.getLineCount(drawCursor))
+        {
+            // A new line moves the rest of the messages
+            return null;
+        }
+
+        final int fromIndex = layout.getVisibleCount(previousDrawCursor);
+        final int toIndex = layout.getVisibleCount(drawCursor);
+        Rectangle bounds = font.getCharacterDrawBounds(msg, layout, messageConfig, emojiConfig, emojiManager, leftEdge, messageY[placedIndex], fromIndex, toIndex);
+        return bounds == null ? new Rectangle() : bounds;
+    }
+
+    /**
+     * Remove the specified expired messages from the message cache. Expired messages are almost always at the front
+     * of the cache, which paint detects by itself, but any removed from elsewhere mean the messages must be measured
+     * again.
+     * 
+     * @param expired
+     *            The messages to remove, oldest first
+     */
+    synchronized public void evictMessages(List<Message> expired)
+    {
+        final boolean removedFromMiddle = displayable.remove(expired);
+        if (removedFromMiddle && heightIndex != null)
+        {
+            heightIndex.invalidate();
+        }
+        if (censor != null && censor.isVisible())
+        {
+            censor.updateManualTable();
+        }
+    }
+
+    /**
+     * Update the chat after any number of messages have been censored, uncensored, or purged. Which messages are
+     * displayable is worked out again in one go, and the expirations of the messages that censoring completed are
+     * scheduled.
+     */
+    public void refreshCensorship()
+    {
+        displayable.invalidate();
+        if (heightIndex != null)
+        {
+            heightIndex.invalidate();
+        }
+        scheduler.refreshExpirations();
+    }
+
+    /**
+     * Get a summary of how often the cached images used to draw the chat could be reused, to be displayed for debugging
+     * 
+     * @return renderStatistics
+     */
+    public String getRenderStatistics()
+    {
+        // The tinted tiles are only ever touched while a frame is drawn
+        final String tintStatistics;
+        synchronized (renderLock)
+        {
+            tintStatistics = "Font tints: " + font.getTintStatistics() + ". Border tints: " + (border == null ? "none" : border.getTintStatistics());
+        }
+        return "Border: " + borderSurface.getHitCount() + " cached, " + borderSurface.getMissCount() + " redrawn. " + tintStatistics + ". " + font.getExtendedGlyphStatistics() + ". " + heightIndex.getStatistics() + ". " + messages.getStatistics() + ". " + displayable.getStatistics() + ". " + scheduler.getStatistics() + ". " + parser.getStatistics() + ". " + reparser.getStatistics() + (activeRenderer.isRunning() ? ". " + activeRenderer.getStatistics() : "");
+    }
+
+    @Override
+    public boolean imageUpdate(Image img, int infoflags, int x, int y, int w, int h)
+    {
+        // A new frame of an animated emoji means the backbuffer needs to be redrawn if it contains that emoji. The
+        // scheduler merges all the emoji frames that come in within a frame into one repaint.
+        if ((infoflags & (FRAMEBITS | ALLBITS)) != 0)
+        {
+            backbufferDirty = true;
+            scheduler.requestFrame();
+        }
+        return (infoflags & (ALLBITS | ABORT)) == 0;
     }
 
     /**
@@ -330,42 +826,49 @@ public class ChatPanel extends JPanel implements MouseWheelListener
      */
     private void drawBackgroundAndChroma(Graphics2D g2d)
     {
-        if (chatConfig.isChromaEnabled())
+        if (snapshot.isChromaEnabled())
         {
-            g2d.setColor(chatConfig.isChromaInvert() ? colorConfig.getBgColor() : colorConfig.getChromaColor());
+            g2d.setColor(snapshot.isChromaInvert() ? snapshot.getBgColor() : snapshot.getChromaColor());
             g2d.fillRect(0, 0, getWidth(), getHeight());
-            g2d.setColor(chatConfig.isChromaInvert() ? colorConfig.getChromaColor() : colorConfig.getBgColor());
-            Rectangle border = chatConfig.getChromaBorder();
-            g2d.fillRoundRect(Math.min(getWidth(), border.x), Math.min(getHeight(), border.y), Math.max(0, getWidth() - border.width - border.x), Math.max(0, getHeight() - border.height - border.y), chatConfig.getChromaCornerRadius(), chatConfig.getChromaCornerRadius());
+            g2d.setColor(snapshot.isChromaInvert() ? snapshot.getChromaColor() : snapshot.getBgColor());
+            g2d.fillRoundRect(Math.min(getWidth(), snapshot.getChromaLeft()), Math.min(getHeight(), snapshot.getChromaTop()), Math.max(0, getWidth() - snapshot.getChromaRight() - snapshot.getChromaLeft()), Math.max(0, getHeight() - snapshot.getChromaBottom() - snapshot.getChromaTop()), snapshot.getChromaCornerRadius(), snapshot.getChromaCornerRadius());
         }
         else
         {
             // Just draw the background
-            g2d.setColor(colorConfig.getBgColor());
+            g2d.setColor(snapshot.getBgColor());
             g2d.fillRect(0, 0, getWidth(), getHeight());
         }
     }
 
     /**
-     * Draw the words in the messages in the chat
+     * Calculate where the messages in the chat are to be drawn, and the number of lines used for scrolling. Only the
+     * messages that are at least partly on screen are placed.
      * 
      * @param g2d
-     * @param messages
+     * @param drawMessages
      * @param offset
+     * @return The messages that were placed, in the same order as drawMessages
      */
-    private void drawChat(Graphics2D g2d, List<Message> drawMessages, Point offset, boolean debug, Color debugColor)
+    private List<Message> placeChat(Graphics2D g2d, List<Message> drawMessages, Point offset)
     {
-        final int lineWrapLength = (border == null || fontConfig.getBorderScale() <= 0.0f ? getWidth() : border.getSpriteDrawWidth(fontConfig.getBorderScale()) * (getWidth() / border.getSpriteDrawWidth(fontConfig.getBorderScale()) - 2)) - fontConfig.getBorderInsetX() * 2;
-        final int leftEdge = offset.x + (border == null || fontConfig.getBorderScale() <= 0.0f ? 0 : border.getSpriteDrawWidth(fontConfig.getBorderScale())) + fontConfig.getBorderInsetX();
+        final float borderScale = snapshot.getBorderScale();
+        lineWrapLength = (border == null || borderScale <= 0.0f ? getWidth() : border.getSpriteDrawWidth(borderScale) * (getWidth() / border.getSpriteDrawWidth(borderScale) - 2)) - snapshot.getBorderInsetX() * 2;
+        leftEdge = offset.x + (border == null || borderScale <= 0.0f ? 0 : border.getSpriteDrawWidth(borderScale)) + snapshot.getBorderInsetX();
+
+        heightIndex.update(drawMessages, font, g2d.getFontMetrics(), messageConfig, emojiConfig, emojiManager, lineWrapLength);
 
-        // totalHeight is the height of all the messages
-        int totalHeight = 0;
-        for (int i = 0; i < drawMessages.size(); i++)
+        // spacedHeight is the height of all the messages with the message spacing after every one of them, which is how
+        // the index measures them
+        final int spacedHeight = heightIndex.getTotalHeight();
+
+        // totalHeight is the height of all the messages, without the message spacing after the last one
+        int totalHeight = spacedHeight;
+        if (!drawMessages.isEmpty())
         {
-            Message msg = drawMessages.get(i);
-            final boolean lastMessage = i >= drawMessages.size() - 1;
-            Dimension dim = font.getMessageDimensions(msg, g2d.getFontMetrics(), messageConfig, emojiConfig, emojiManager, lineWrapLength, lastMessage);
-            totalHeight += dim.getHeight();
+            final int last = drawMessages.size() - 1;
+            Dimension dim = font.getMessageDimensions(drawMessages.get(last), g2d.getFontMetrics(), messageConfig, emojiConfig, emojiManager, lineWrapLength, true);
+            totalHeight += dim.getHeight() - heightIndex.getHeight(last);
         }
 
         // Used for scrolling
@@ -377,7 +880,7 @@ public class ChatPanel extends JPanel implements MouseWheelListener
         lineCount = lineHeight == 0 ? 0 : totalHeight / lineHeight;
 
         // borderEdgeThickness is the y-inset on the top plus the height of the top part of the border
-        final int borderEdgeThickness = offset.y + (border == null || fontConfig.getBorderScale() < ConfigFont.FONT_BORDER_SCALE_GRANULARITY ? 0 : border.getSpriteDrawHeight(fontConfig.getBorderScale())) + fontConfig.getBorderInsetY();
+        borderEdgeThickness = offset.y + (border == null || borderScale < ConfigFont.FONT_BORDER_SCALE_GRANULARITY ? 0 : border.getSpriteDrawHeight(borderScale)) + snapshot.getBorderInsetY();
 
         final int drawableVerticalRange = getHeight() - borderEdgeThickness * 2;
 
@@ -386,9 +889,9 @@ public class ChatPanel extends JPanel implements MouseWheelListener
 
         // y is where the drawing begins
         int y;
-        if (chatConfig.isChatFromBottom())
+        if (snapshot.isChatFromBottom())
         {
-            if (chatConfig.isReverseScrolling())
+            if (snapshot.isReverseScrolling())
             {
                 if (totalHeight > drawableVerticalRange)
                 {
@@ -407,7 +910,7 @@ public class ChatPanel extends JPanel implements MouseWheelListener
         // else chat from top
         else
         {
-            if (chatConfig.isReverseScrolling())
+            if (snapshot.isReverseScrolling())
             {
                 y = borderEdgeThickness;
             }
@@ -427,8 +930,7 @@ public class ChatPanel extends JPanel implements MouseWheelListener
             }
         }
 
-        final int botLimit;
-        if (chatConfig.isReverseScrolling() && totalHeight > drawableVerticalRange)
+        if (snapshot.isReverseScrolling() && totalHeight > drawableVerticalRange)
         {
             botLimit = getHeight() - borderEdgeThickness - font.getLineHeightScaled();
         }
@@ -437,33 +939,94 @@ public class ChatPanel extends JPanel implements MouseWheelListener
             botLimit = getHeight() - borderEdgeThickness;
         }
 
-        // Draw each message in the drawMessages copy of the cache
-        for (int i = 0; i < drawMessages.size(); i++)
+        // Where the messages start drawing once scrolled, which is where drawMessage adds the scroll offset
+        final int scrolledY = y + font.getLineScrollOffset() * font.getLineHeightScaled();
+
+        // Find the range of messages that reach below the top limit and start above the bottom limit. Messages are drawn
+        // in order, so the tops are the sums of the heights of the messages drawn before them. When scrolling in
+        // reverse, they are drawn starting with the last message, so the tops are measured up from the bottom.
+        int first;
+        int end;
+        if (font.getLineHeightScaled() <= 0)
+        {
+            // Lines that overlap upward don't stack in order, so just place everything
+            first = 0;
+            end = drawMessages.size();
+        }
+        else if (snapshot.isReverseScrolling())
         {
-            int msgIndex = chatConfig.isReverseScrolling() ? drawMessages.size() - i - 1 : i;
-            Message msg = drawMessages.get(msgIndex);
-            Color col = getUsernameColor(colorConfig, msg);
-            final boolean lastMessage = i >= drawMessages.size() - 1;
-            // The call to drawMessage in SpriteFont will determine whether to draw each character based on whether it is located at a position appropriate to be drawn on
-            Dimension dim = font.drawMessage(g2d, g2d.getFontMetrics(), msg, col, colorConfig, messageConfig, emojiConfig, emojiManager, leftEdge, y, borderEdgeThickness, botLimit, lineWrapLength, debug, debugColor, this, lastMessage);
-            y += dim.getHeight();
+            first = heightIndex.getCountWithin(scrolledY + spacedHeight - botLimit);
+            end = getCountBefore(scrolledY + spacedHeight - borderEdgeThickness, drawMessages.size());
         }
+        else
+        {
+            first = heightIndex.getCountWithin(borderEdgeThickness - scrolledY);
+            end = getCountBefore(botLimit - scrolledY, drawMessages.size());
+        }
+        end = Math.max(first, end);
+
+        // Place each message that is on screen
+        messageY = new int[end - first];
+        for (int i = first; i < end; i++)
+        {
+            if (snapshot.isReverseScrolling())
+            {
+                messageY[i - first] = y + spacedHeight - heightIndex.getTop(i) - heightIndex.getHeight(i);
+            }
+            else
+            {
+                messageY[i - first] = y + heightIndex.getTop(i);
+            }
+        }
+        List<Message> placed = drawMessages.subList(first, end);
+        placedMessages = placed;
+        return placed;
     }
 
-    private static Color getUsernameColor(ConfigColor colorConfig, Message msg)
+    /**
+     * Get the number of messages, starting from the first, whose tops are above the specified height when drawn in order
+     * 
+     * @param height
+     * @param size
+     *            The number of messages
+     * @return count
+     */
+    private int getCountBefore(int height, int size)
+    {
+        return height <= 0 ? 0 : Math.min(size, heightIndex.getCountWithin(height - 1) + 1);
+    }
+
+    /**
+     * Draw one of the messages in the chat where placeChat put it
+     * 
+     * @param g2d
+     * @param placed
+     *            The messages that were placed
+     * @param placedIndex
+     *            The index of the message in placed
+     */
+    private void drawChatMessage(Graphics2D g2d, List<Message> placed, int placedIndex)
+    {
+        Message msg = placed.get(placedIndex);
+        Color col = getUsernameColor(snapshot, msg);
+        // The call to drawMessage in SpriteFont will determine whether to draw each character based on whether it is located at a position appropriate to be drawn on. The size it returns isn't needed, so whether it's the last message doesn't matter.
+        font.drawMessage(g2d, g2d.getFontMetrics(), msg, col, messageConfig, emojiConfig, emojiManager, leftEdge, messageY[placedIndex], borderEdgeThickness, botLimit, lineWrapLength, debugSettings.isDrawTextGrid(), debugSettings.getTextGridColor(), this, false);
+    }
+
+    private static Color getUsernameColor(RenderSnapshot snapshot, Message msg)
     {
         Color col;
         if (msg.isJoinType())
         {
-            col = colorConfig.getHighlight();
+            col = snapshot.getHighlight();
         }
-        else if (colorConfig.isUseTwitchColors() && msg.getPrivmsg().getColor() != null)
+        else if (snapshot.isUseTwitchColors() && msg.getPrivmsg().getColor() != null)
         {
-            col = msg.getPrivmsg().getColor();
+            col = snapshot.isQuantizeTwitchColors() ? ConfigColor.quantize(msg.getPrivmsg().getColor()) : msg.getPrivmsg().getColor();
         }
         else
         {
-            col = colorConfig.getPalette().isEmpty() ? colorConfig.getHighlight() : colorConfig.getPalette().get(Math.abs(msg.getUsername().toLowerCase().hashCode()) % colorConfig.getPalette().size());
+            col = snapshot.getPaletteSize() == 0 ? snapshot.getHighlight() : snapshot.getPaletteColor(msg.getUsernameHash() % snapshot.getPaletteSize());
         }
         return col;
     }
@@ -479,80 +1042,7 @@ public class ChatPanel extends JPanel implements MouseWheelListener
      */
     private void drawBorder(Graphics2D g2d, int gridWidth, int gridHeight, Point offset, Color color, boolean debug, Color debugColor)
     {
-        final float scale = fontConfig.getBorderScale();
-
-        if (scale <= 0.0f)
-        {
-            return;
-        }
-
-        if (debug)
-        {
-            g2d.setColor(debugColor);
-        }
-
-        for (int r = 0; r < gridHeight; r++)
-        {
-            for (int c = 0; c < gridWidth; c++)
-            {
-                int pixelX = c * border.getSpriteDrawWidth(scale) + offset.x;
-                int pixelY = r * border.getSpriteDrawHeight(scale) + offset.y;
-
-                if (r == 0) // Top row
-                {
-                    if (c == 0) // Top left
-                    {
-                        border.draw(g2d, pixelX, pixelY, 0, scale, color);
-                    }
-                    else if (c == gridWidth - 1) // Top right
-                    {
-                        border.draw(g2d, pixelX, pixelY, 2, scale, color);
-                    }
-                    else
-                    // Top middle
-                    {
-                        border.draw(g2d, pixelX, pixelY, 1, scale, color);
-                    }
-                }
-                else if (r == gridHeight - 1) // Bottom row
-                {
-                    if (c == 0) // Bottom left
-                    {
-                        border.draw(g2d, pixelX, pixelY, 6, scale, color);
-                    }
-                    else if (c == gridWidth - 1) // Bottom right
-                    {
-                        border.draw(g2d, pixelX, pixelY, 8, scale, color);
-                    }
-                    else
-                    // Bottom middle
-                    {
-                        border.draw(g2d, pixelX, pixelY, 7, scale, color);
-                    }
-                }
-                else
-                // Middle
-                {
-                    if (c == 0) // Middle left
-                    {
-                        border.draw(g2d, pixelX, pixelY, 3, scale, color);
-                    }
-                    else if (c == gridWidth - 1) // Middle right
-                    {
-                        border.draw(g2d, pixelX, pixelY, 5, scale, color);
-                    }
-                    else
-                    // Middle middle
-                    {
-                        border.draw(g2d, pixelX, pixelY, 4, scale, color);
-                    }
-                }
-                if (debug)
-                {
-                    g2d.drawRect(pixelX, pixelY, (int) (border.getSpriteWidth() * scale), (int) (border.getSpriteHeight() * scale));
-                }
-            }
-        }
+        borderSurface.draw(g2d, getGraphicsConfiguration(), border, getWidth(), getHeight(), gridWidth, gridHeight, offset, snapshot.getBorderScale(), color, debug, debugColor);
     }
 
     /**
@@ -569,17 +1059,16 @@ public class ChatPanel extends JPanel implements MouseWheelListener
 
         censor.checkCensor(addition);
 
+        // A message censored on arrival is already completely drawn, so it won't be scheduled to expire by its rollout
+        scheduler.scheduleExpiration(addition);
+
         // Note that for a moment here, the size of messages can exceed the specified queueSize in the message config,
         // so if another thread is accessing this, be sure to take that into consideration
-        messages.add(addition);
-        int remCount = Math.max(0, messages.size() - messageConfig.getQueueSize());
-
-        Iterator<Message> iter = messages.iterator();
-        while (iter.hasNext() && remCount > 0)
+        final List<Message> trimmed = displayable.add(addition, messageConfig.getQueueSize());
+        if (!trimmed.isEmpty())
         {
-            iter.next();
-            iter.remove();
-            remCount--;
+            // Messages trimmed off the front would otherwise sit in the expiration queue until they were due to expire
+            scheduler.cancelExpirations(trimmed);
         }
 
         initMessageRollout();
@@ -588,7 +1077,20 @@ public class ChatPanel extends JPanel implements MouseWheelListener
             censor.updateManualTable();
         }
 
-        repaint();
+        // Adding to the end and trimming from the front are detected by paint, so nothing already drawn needs to be
+        // invalidated, and a burst of messages only needs to be repainted once
+        scheduler.requestFrame();
+    }
+
+    /**
+     * Add a message to the chat once its text has been parsed on a worker thread, after every message submitted before
+     * it. This is how posted messages should be added, so the text is ready before the message is first drawn.
+     * 
+     * @param addition
+     */
+    public void submitMessage(Message addition)
+    {
+        parser.submit(addition);
     }
 
     /**
@@ -596,7 +1098,8 @@ public class ChatPanel extends JPanel implements MouseWheelListener
      */
     synchronized public void clearChat()
     {
-        messages.clear();
+        displayable.clear();
+        scheduler.refreshExpirations();
         repaint();
     }
 
@@ -607,7 +1110,10 @@ public class ChatPanel extends JPanel implements MouseWheelListener
     {
         if (isLoaded())
         {
-            font.setLineScrollOffset(0);
+            synchronized (renderLock)
+            {
+                font.setLineScrollOffset(0);
+            }
         }
     }
 
@@ -624,23 +1130,26 @@ public class ChatPanel extends JPanel implements MouseWheelListener
         if (isLoaded())
         {
             final int dir = positiveDirection ? lines : -lines;
-            if (chatConfig.isChatFromBottom())
-            {
-                font.incrementLineScrollOffset(dir, 0, lineCount);
-            }
-            else
+            synchronized (renderLock)
             {
-                final boolean screenIsOverflowing = lineCount >= onScreenLineCount;
-                if (screenIsOverflowing)
+                if (chatConfig.isChatFromBottom())
                 {
-                    font.incrementLineScrollOffset(dir, -onScreenLineCount + 1, lineCount - onScreenLineCount + 1);
+                    font.incrementLineScrollOffset(dir, 0, lineCount);
                 }
                 else
                 {
-                    font.incrementLineScrollOffset(dir, lineCount == 0 ? 0 : -lineCount + 1, 1);
+                    final boolean screenIsOverflowing = lineCount >= onScreenLineCount;
+                    if (screenIsOverflowing)
+                    {
+                        font.incrementLineScrollOffset(dir, -onScreenLineCount + 1, lineCount - onScreenLineCount + 1);
+                    }
+                    else
+                    {
+                        font.incrementLineScrollOffset(dir, lineCount == 0 ? 0 : -lineCount + 1, 1);
+                    }
                 }
             }
-            repaint();
+            repaintMessages();
         }
     }
 
@@ -657,22 +1166,22 @@ public class ChatPanel extends JPanel implements MouseWheelListener
     }
 
     /**
-     * Get the message cache. This is used by the timer task that resides in the MessageProgressor object to increment
-     * the drawing of the messages
+     * Get the message cache
      * 
      * @return messages
      */
     synchronized public Message[] getMessages()
     {
-        return messages.toArray(new Message[messages.size()]);
+        return messages.toArray();
     }
 
     /**
-     * Get the actual queue of messages
+     * Get the actual store of messages. It is only to be read, because every change to it needs to go through the
+     * displayable messages, like addMessage, evictMessages, and clearChat do.
      * 
      * @return messages
      */
-    public ConcurrentLinkedQueue<Message> getMessageQueue()
+    public MessageStore getMessageStore()
     {
         return messages;
     }
@@ -685,7 +1194,10 @@ public class ChatPanel extends JPanel implements MouseWheelListener
      */
     public void reloadFontFromConfig() throws IOException
     {
-        font.updateForConfigChange();
+        synchronized (renderLock)
+        {
+            font.updateForConfigChange();
+        }
     }
 
     /**
@@ -695,15 +1207,21 @@ public class ChatPanel extends JPanel implements MouseWheelListener
      */
     public void reloadBorderFromConfig() throws IOException
     {
+        Sprite reloaded;
         try
         {
-            border = new Sprite(fontConfig.getBorderFilename(), 3, 3);
+            reloaded = new Sprite(fontConfig.getBorderFilename(), 3, 3);
         }
         catch (Exception e)
         {
             final String errorMessage = "Unable to load border sprite " + (fontConfig == null ? "for null font configuration" : "for border filename " + fontConfig.getBorderFilename());
             logger.error(errorMessage, e);
-            border = new Sprite();
+            reloaded = new Sprite();
+        }
+
+        synchronized (renderLock)
+        {
+            border = reloaded;
         }
     }
 
@@ -728,18 +1246,13 @@ public class ChatPanel extends JPanel implements MouseWheelListener
     }
 
     /**
-     * Get the message progressor
+     * Get the scheduler that rolls out the messages and repaints the chat over time
      * 
-     * @return messageProgressor
+     * @return scheduler
      */
-    public MessageProgressor getMessageProgressor()
+    public FrameScheduler getFrameScheduler()
     {
-        return messageProgressor;
-    }
-
-    public MessageExpirer getMessageExpirer()
-    {
-        return messageExpirer;
+        return scheduler;
     }
 
     public void banUser(String bannedUser)
@@ -759,22 +1272,14 @@ public class ChatPanel extends JPanel implements MouseWheelListener
         return emojiManager;
     }
 
-    public void initExpirationTimer()
-    {
-        if (messageConfig.isMessageExpirable())
-        {
-            messageExpirer.startClock();
-        }
-    }
-
     /**
      * Attempt to restart the message rollout, called whenever some messages might be reintroduced to the drawMessage
      * after the message rollout is completed, by being uncensored for example. This call relies on the fact that the
-     * messageProgression will halt again if all the messages are complete already.
+     * scheduler will halt the rollout again if all the messages are complete already.
      */
     public void initMessageRollout()
     {
-        messageProgressor.startClock(messageConfig.getMessageDelay());
+        scheduler.startRollout();
     }
 
     public boolean isCensorshipEnabled()
@@ -790,7 +1295,15 @@ public class ChatPanel extends JPanel implements MouseWheelListener
      */
     public void purgeMessagesForUser(final String username, final String reason)
     {
-        censor.purgeMessagesForUser(username, reason);
+        // Messages posted before the purge may still be being parsed, so wait for them to be added to purge them too
+        parser.submitAfterPending(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                censor.purgeMessagesForUser(username, reason);
+            }
+        });
     }
 
     public String getFontGameName()
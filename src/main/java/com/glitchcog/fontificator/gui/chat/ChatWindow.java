@@ -93,7 +93,7 @@ public class ChatWindow extends JFrame
         setAlwaysOnTop(fProps.getChatConfig().isAlwaysOnTop());
 
         chatPanel.setConfig(fProps);
-        chatPanel.initExpirationTimer();
+        chatPanel.setActiveRendering(fProps.getChatConfig().isActiveRendering());
 
         addWindowListener(new WindowListener()
         {
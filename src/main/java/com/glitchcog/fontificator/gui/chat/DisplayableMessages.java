@@ -0,0 +1,281 @@
+package com.glitchcog.fontificator.gui.chat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.glitchcog.fontificator.bot.Message;
+
+/**
+ * The messages in the message cache that can be displayed, kept up to date as messages are added to the cache, removed
+ * from it, and rolled out, so painting the chat doesn't have to go through the whole cache to find them. A message is
+ * displayable if it isn't censored and it is completely drawn, has started rolling out, or is the first message that
+ * isn't completely drawn. Censoring or uncensoring messages can change which of them are displayable anywhere in the
+ * cache, so that rebuilds the view from the cache in one go the next time it's needed.
+ *
+ * The message cache must only be changed through this view, so the two always agree.
+ *
+ * @author Matt Yanos
+ */
+public class DisplayableMessages
+{
+    /**
+     * The message cache
+     */
+    private final MessageStore cache;
+
+    /**
+     * The messages in the cache that aren't censored, in the same order, starting at uncensoredStart. Messages removed
+     * from the front are only cleared out of the list once they make up half of it, so removing them doesn't move the
+     * rest every time.
+     */
+    private final List<Message> uncensored;
+
+    private int uncensoredStart;
+
+    /**
+     * The number of uncensored messages, from the first, that are displayable
+     */
+    private int displayableCount;
+
+    /**
+     * The position among the uncensored messages of the first one that wasn't completely drawn the last time it was
+     * checked. Every message before it is completely drawn.
+     */
+    private int rollingIndex;
+
+    /**
+     * Whether censored messages were left out of the view when it was built
+     */
+    private boolean censorshipEnabled;
+
+    /**
+     * Whether the view needs to be rebuilt from the cache
+     */
+    private boolean dirty;
+
+    /**
+     * The displayable messages as last handed out, or null if they have changed since
+     */
+    private List<Message> view;
+
+    private long rebuildCount;
+
+    public DisplayableMessages(MessageStore cache)
+    {
+        this.cache = cache;
+        this.uncensored = new ArrayList<Message>();
+        this.dirty = true;
+    }
+
+    /**
+     * Add a message to the end of the cache, then remove the oldest messages beyond the specified queue size
+     *
+     * @param msg
+     * @param queueSize
+     * @return the messages removed to keep to the queue size, oldest first
+     */
+    public synchronized List<Message> add(Message msg, int queueSize)
+    {
+        cache.add(msg, queueSize);
+        if (!dirty && !(censorshipEnabled && msg.isCensored()))
+        {
+            // Whether it is displayable yet is worked out when the view is next needed
+            uncensored.add(msg);
+        }
+
+        if (cache.size() <= queueSize)
+        {
+            return Collections.emptyList();
+        }
+
+        List<Message> trimmed = new ArrayList<Message>(cache.size() - queueSize);
+        while (cache.size() > queueSize)
+        {
+            final Message oldest = cache.removeFirst();
+            removeFromView(oldest);
+            trimmed.add(oldest);
+        }
+        return trimmed;
+    }
+
+    /**
+     * Remove the specified messages from the cache
+     *
+     * @param removals
+     *            The messages to remove, oldest first
+     * @return whether any of the messages were removed from somewhere other than the front of the cache
+     */
+    public synchronized boolean remove(List<Message> removals)
+    {
+        boolean removedFromMiddle = false;
+        for (Message msg : removals)
+        {
+            if (cache.peek() == msg)
+            {
+                cache.removeFirst();
+            }
+            else if (cache.remove(msg))
+            {
+                removedFromMiddle = true;
+            }
+            else
+            {
+                continue;
+            }
+            removeFromView(msg);
+        }
+        return removedFromMiddle;
+    }
+
+    /**
+     * Remove every message from the cache
+     */
+    public synchronized void clear()
+    {
+        cache.clear();
+        uncensored.clear();
+        uncensoredStart = 0;
+        displayableCount = 0;
+        rollingIndex = 0;
+        view = null;
+    }
+
+    /**
+     * Mark the view to be rebuilt from the cache, for when messages have been censored or uncensored
+     */
+    public synchronized void invalidate()
+    {
+        dirty = true;
+    }
+
+    /**
+     * Get the displayable messages. Messages that have started rolling out or become the first one being rolled out
+     * since the last call are picked up here, so the returned list only changes when the messages do.
+     *
+     * @param censorshipEnabled
+     *            Whether censored messages are hidden
+     * @return the displayable messages, in the order they are in the cache, which must not be modified
+     */
+    public synchronized List<Message> getMessages(boolean censorshipEnabled)
+    {
+        if (dirty || this.censorshipEnabled != censorshipEnabled)
+        {
+            rebuild(censorshipEnabled);
+        }
+
+        while (displayableCount < getUncensoredCount())
+        {
+            while (rollingIndex < displayableCount && getUncensored(rollingIndex).isCompletelyDrawn())
+            {
+                rollingIndex++;
+            }
+
+            // A message still waiting its turn to roll out is only displayed if every message before it is done
+            Message msg = getUncensored(displayableCount);
+            if (!msg.isCompletelyDrawn() && !msg.isRolloutStarted() && rollingIndex < displayableCount)
+            {
+                break;
+            }
+            displayableCount++;
+            view = null;
+        }
+
+        if (view == null)
+        {
+            view = Collections.unmodifiableList(new ArrayList<Message>(uncensored.subList(uncensoredStart, uncensoredStart + displayableCount)));
+        }
+        return view;
+    }
+
+    private void rebuild(boolean censorshipEnabled)
+    {
+        this.censorshipEnabled = censorshipEnabled;
+        this.dirty = false;
+        uncensored.clear();
+        uncensoredStart = 0;
+        final Message[] messages = cache.toArray();
+        for (Message msg : messages)
+        {
+            if (!(censorshipEnabled && msg.isCensored()))
+            {
+                uncensored.add(msg);
+            }
+        }
+        displayableCount = 0;
+        rollingIndex = 0;
+        view = null;
+        rebuildCount++;
+    }
+
+    private int getUncensoredCount()
+    {
+        return uncensored.size() - uncensoredStart;
+    }
+
+    private Message getUncensored(int index)
+    {
+        return uncensored.get(uncensoredStart + index);
+    }
+
+    /**
+     * Remove the specified message, which has just been removed from the cache, from the view
+     *
+     * @param msg
+     */
+    private void removeFromView(Message msg)
+    {
+        if (dirty)
+        {
+            return;
+        }
+
+        int index = -1;
+        for (int i = 0; i < getUncensoredCount(); i++)
+        {
+            if (getUncensored(i) == msg)
+            {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0)
+        {
+            return;
+        }
+
+        if (index == 0)
+        {
+            uncensored.set(uncensoredStart, null);
+            uncensoredStart++;
+            if (uncensoredStart > uncensored.size() / 2)
+            {
+                uncensored.subList(0, uncensoredStart).clear();
+                uncensoredStart = 0;
+            }
+        }
+        else
+        {
+            uncensored.remove(uncensoredStart + index);
+        }
+        if (index < displayableCount)
+        {
+            displayableCount--;
+            view = null;
+        }
+        if (index < rollingIndex)
+        {
+            rollingIndex--;
+        }
+    }
+
+    /**
+     * Get a summary of how often the view has had to be rebuilt, to be displayed for debugging
+     *
+     * @return statistics
+     */
+    public synchronized String getStatistics()
+    {
+        return "Displayable messages: " + displayableCount + " of " + getUncensoredCount() + " uncensored, " + rebuildCount + " rebuilds";
+    }
+}
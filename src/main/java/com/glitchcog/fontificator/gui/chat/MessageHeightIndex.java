@@ -0,0 +1,415 @@
+package com.glitchcog.fontificator.gui.chat;
+
+import java.awt.FontMetrics;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.glitchcog.fontificator.bot.Message;
+import com.glitchcog.fontificator.config.ConfigEmoji;
+import com.glitchcog.fontificator.config.ConfigMessage;
+import com.glitchcog.fontificator.emoji.EmojiManager;
+import com.glitchcog.fontificator.sprite.SpriteFont;
+
+/**
+ * The heights of the displayable messages, in a Fenwick tree so the top of any message, the total height, and which
+ * message is at a given height can all be found without adding up the heights of every message. Each message is in a
+ * slot, and slots are only ever added at the end and removed from the front, which covers messages being added,
+ * evicted, expired, and rolled out, so those only need the changed slots and the slots still rolling out measured.
+ * Anything else, like a config change or a message being censored, measures everything again.
+ *
+ * All the heights include the message spacing after the message, as if none of them were the last message.
+ *
+ * @author Matt Yanos
+ */
+public class MessageHeightIndex
+{
+    private static final int MIN_CAPACITY = 16;
+
+    /**
+     * The message in each slot, null for slots outside of the live range
+     */
+    private Message[] messages;
+
+    /**
+     * The height of the message in each slot, zero for slots outside of the live range
+     */
+    private int[] heights;
+
+    /**
+     * The Fenwick tree of the heights, indexed from one
+     */
+    private int[] tree;
+
+    /**
+     * The slot of the first message
+     */
+    private int start;
+
+    /**
+     * One past the slot of the last message
+     */
+    private int end;
+
+    /**
+     * The slot of each message, to find where the messages to be indexed pick up from the ones already indexed
+     */
+    private Map<Message, Integer> slots;
+
+    /**
+     * The slot of the first message that wasn't completely drawn when it was measured, or end if there is none. It and
+     * the slots after it may have grown since.
+     */
+    private int rollingSlot;
+
+    /**
+     * Whether the heights are known to be out of date, meaning every message must be measured again. It's set from
+     * outside the render lock, by the scheduler thread and the event dispatch thread, so it's taken and cleared in one
+     * step at the start of an update, and marking the index out of date partway through an update is never lost.
+     */
+    private final AtomicBoolean dirty;
+
+    private SpriteFont font;
+
+    private int layoutVersion;
+
+    private int lineWrapLength;
+
+    /**
+     * The number of updates that only measured the messages that were added or could have changed
+     */
+    private long incrementalCount;
+
+    /**
+     * The number of updates that had to index every message again
+     */
+    private long rebuildCount;
+
+    public MessageHeightIndex()
+    {
+        this.slots = new IdentityHashMap<Message, Integer>();
+        this.dirty = new AtomicBoolean(true);
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity)
+    {
+        messages = new Message[capacity];
+        heights = new int[capacity];
+        tree = new int[capacity + 1];
+        start = 0;
+        end = 0;
+        rollingSlot = 0;
+    }
+
+    /**
+     * Mark the heights as out of date, for when something has changed how the messages are laid out, or which messages
+     * are displayable, in a way the index can't detect by itself
+     */
+    public void invalidate()
+    {
+        dirty.set(true);
+    }
+
+    /**
+     * Bring the index up to date with the specified displayable messages. The usual changes since the last update, which
+     * are messages dropped off the front, messages added to the end, and messages rolling out further, are applied by
+     * only measuring the messages that were added, the one that was last before, and any that were still rolling out.
+     * Anything else indexes every message again.
+     *
+     * @param displayable
+     *            The messages in the order they are in the message queue
+     * @param font
+     * @param fontMetrics
+     * @param messageConfig
+     * @param emojiConfig
+     * @param emojiManager
+     * @param lineWrapLength
+     */
+    public void update(List<Message> displayable, SpriteFont font, FontMetrics fontMetrics, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager, int lineWrapLength)
+    {
+        final boolean layoutChanged = dirty.getAndSet(false) || this.font != font || layoutVersion != font.getLayoutVersion() || this.lineWrapLength != lineWrapLength;
+        this.font = font;
+        this.layoutVersion = font.getLayoutVersion();
+        this.lineWrapLength = lineWrapLength;
+
+        if (layoutChanged || !updateIncrementally(displayable, fontMetrics, messageConfig, emojiConfig, emojiManager))
+        {
+            rebuild(displayable, !layoutChanged, fontMetrics, messageConfig, emojiConfig, emojiManager);
+            rebuildCount++;
+        }
+        else
+        {
+            incrementalCount++;
+        }
+    }
+
+    /**
+     * Apply the changes if the displayable messages are the ones already indexed with some dropped off the front and
+     * some added to the end. The first and last messages that are still indexed are checked, along with the count of
+     * them, which is enough because messages only ever disappear from the middle by being censored, which invalidates
+     * the index anyway.
+     *
+     * @return whether the changes could be applied
+     */
+    private boolean updateIncrementally(List<Message> displayable, FontMetrics fontMetrics, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager)
+    {
+        if (displayable.isEmpty() || size() == 0)
+        {
+            return false;
+        }
+
+        final Integer firstSlot = slots.get(displayable.get(0));
+        if (firstSlot == null)
+        {
+            return false;
+        }
+
+        final int keptCount = end - firstSlot;
+        if (keptCount > displayable.size() || displayable.get(keptCount - 1) != messages[end - 1])
+        {
+            return false;
+        }
+
+        while (start < firstSlot)
+        {
+            slots.remove(messages[start]);
+            setHeight(start, 0);
+            messages[start] = null;
+            start++;
+        }
+
+        // The messages that were rolling out may have grown since they were measured
+        final int remeasureSlot = Math.min(end - 1, Math.max(start, rollingSlot));
+        for (int slot = remeasureSlot; slot < end; slot++)
+        {
+            setHeight(slot, measure(messages[slot], fontMetrics, messageConfig, emojiConfig, emojiManager));
+        }
+        final int remeasureIndex = remeasureSlot - start;
+
+        final int addedCount = displayable.size() - keptCount;
+        if (end + addedCount > messages.length)
+        {
+            compact(keptCount + addedCount);
+        }
+        for (int i = keptCount; i < displayable.size(); i++)
+        {
+            Message msg = displayable.get(i);
+            messages[end] = msg;
+            slots.put(msg, end);
+            setHeight(end, measure(msg, fontMetrics, messageConfig, emojiConfig, emojiManager));
+            end++;
+        }
+        // The messages before the ones measured again were already completely drawn, and compacting keeps their order
+        rollingSlot = findRollingSlot(start + remeasureIndex);
+        return true;
+    }
+
+    /**
+     * Index every message again
+     *
+     * @param displayable
+     * @param reuseHeights
+     *            Whether the heights of messages that were already indexed and completely drawn are still valid
+     */
+    private void rebuild(List<Message> displayable, boolean reuseHeights, FontMetrics fontMetrics, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager)
+    {
+        int[] newHeights = new int[displayable.size()];
+        for (int i = 0; i < displayable.size(); i++)
+        {
+            Message msg = displayable.get(i);
+            final Integer slot = slots.get(msg);
+            if (reuseHeights && slot != null && slot < rollingSlot && slot < end - 1 && msg.isCompletelyDrawn())
+            {
+                newHeights[i] = heights[slot];
+            }
+            else
+            {
+                newHeights[i] = measure(msg, fontMetrics, messageConfig, emojiConfig, emojiManager);
+            }
+        }
+
+        allocate(getCapacity(displayable.size()));
+        slots.clear();
+        for (int i = 0; i < displayable.size(); i++)
+        {
+            messages[i] = displayable.get(i);
+            heights[i] = newHeights[i];
+            slots.put(messages[i], i);
+        }
+        end = displayable.size();
+        rollingSlot = findRollingSlot(0);
+        buildTree();
+    }
+
+    /**
+     * Find the first slot, starting from the specified one, with a message that isn't completely drawn
+     *
+     * @param from
+     * @return slot, or end if there is none
+     */
+    private int findRollingSlot(int from)
+    {
+        for (int slot = from; slot < end; slot++)
+        {
+            if (!messages[slot].isCompletelyDrawn())
+            {
+                return slot;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Move the messages to the front of new slots with enough room for the specified number of messages
+     *
+     * @param count
+     */
+    private void compact(int count)
+    {
+        Message[] oldMessages = messages;
+        int[] oldHeights = heights;
+        final int oldStart = start;
+        final int oldEnd = end;
+
+        allocate(getCapacity(count));
+        slots.clear();
+        for (int slot = oldStart; slot < oldEnd; slot++)
+        {
+            messages[end] = oldMessages[slot];
+            heights[end] = oldHeights[slot];
+            slots.put(messages[end], end);
+            end++;
+        }
+        buildTree();
+    }
+
+    private static int getCapacity(int count)
+    {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, count * 2) - 1) << 1);
+    }
+
+    private void buildTree()
+    {
+        for (int i = 1; i < tree.length; i++)
+        {
+            tree[i] = heights[i - 1];
+        }
+        for (int i = 1; i < tree.length; i++)
+        {
+            final int parent = i + (i & -i);
+            if (parent < tree.length)
+            {
+                tree[parent] += tree[i];
+            }
+        }
+    }
+
+    private void setHeight(int slot, int height)
+    {
+        final int delta = height - heights[slot];
+        heights[slot] = height;
+        if (delta != 0)
+        {
+            for (int i = slot + 1; i < tree.length; i += i & -i)
+            {
+                tree[i] += delta;
+            }
+        }
+    }
+
+    /**
+     * Get the sum of the heights of the slots before the specified slot
+     *
+     * @param slot
+     * @return sum
+     */
+    private int sum(int slot)
+    {
+        int sum = 0;
+        for (int i = slot; i > 0; i -= i & -i)
+        {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    private int measure(Message msg, FontMetrics fontMetrics, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager)
+    {
+        return (int) font.getMessageDimensions(msg, fontMetrics, messageConfig, emojiConfig, emojiManager, lineWrapLength, false).getHeight();
+    }
+
+    /**
+     * The number of messages indexed
+     *
+     * @return size
+     */
+    public int size()
+    {
+        return end - start;
+    }
+
+    public int getHeight(int index)
+    {
+        return heights[start + index];
+    }
+
+    /**
+     * Get the sum of the heights of all the messages before the one at the specified index, which is where the top of
+     * that message is relative to the top of the first message
+     *
+     * @param index
+     * @return top
+     */
+    public int getTop(int index)
+    {
+        // The slots before the start are all zero, so they don't need to be subtracted out
+        return sum(start + index);
+    }
+
+    /**
+     * Get the sum of the heights of all the messages
+     *
+     * @return totalHeight
+     */
+    public int getTotalHeight()
+    {
+        return sum(end);
+    }
+
+    /**
+     * Get the number of messages, starting from the first, whose heights add up to no more than the specified height
+     *
+     * @param height
+     * @return count
+     */
+    public int getCountWithin(int height)
+    {
+        if (height < 0)
+        {
+            return 0;
+        }
+        int slot = 0;
+        int remaining = height;
+        for (int step = Integer.highestOneBit(tree.length - 1); step > 0; step >>= 1)
+        {
+            if (slot + step < tree.length && tree[slot + step] <= remaining)
+            {
+                slot += step;
+                remaining -= tree[slot];
+            }
+        }
+        return Math.max(0, Math.min(slot, end) - start);
+    }
+
+    /**
+     * Get a summary of how often the index was updated incrementally, to be displayed for debugging
+     *
+     * @return statistics
+     */
+    public String getStatistics()
+    {
+        return "Heights: " + size() + " messages, " + incrementalCount + " incremental, " + rebuildCount + " rebuilt";
+    }
+}
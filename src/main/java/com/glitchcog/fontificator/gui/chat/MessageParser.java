@@ -0,0 +1,198 @@
+package com.glitchcog.fontificator.gui.chat;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import com.glitchcog.fontificator.bot.Message;
+
+/**
+ * Parses new messages into their sprite text on a pool of worker threads before they are added to the chat, so the
+ * text is ready by the time the message is first measured and drawn, and a burst of messages is parsed on as many
+ * cores as there are. However long each one takes to parse, messages are added to the chat in the order they were
+ * posted.
+ *
+ * @author Matt Yanos
+ */
+public class MessageParser
+{
+    private static final Logger logger = Logger.getLogger(MessageParser.class);
+
+    private final ChatPanel chat;
+
+    private final ExecutorService workers;
+
+    /**
+     * Everything handed to the parser that hasn't been passed on to the chat yet, in the order it was handed in. Only
+     * the entries at the front that are ready are passed on, so nothing overtakes anything handed in before it.
+     */
+    private final Deque<Entry> pending;
+
+    private long parsedCount;
+
+    private long parseNanos;
+
+    private int waitingCount;
+
+    /**
+     * A message waiting to be parsed and added to the chat, or something to be done to the chat once every message
+     * handed in before it has been added
+     */
+    private static class Entry
+    {
+        private final Message message;
+
+        private final Runnable action;
+
+        private boolean ready;
+
+        private Entry(Message message, Runnable action, boolean ready)
+        {
+            this.message = message;
+            this.action = action;
+            this.ready = ready;
+        }
+    }
+
+    public MessageParser(ChatPanel chat)
+    {
+        this.chat = chat;
+        this.pending = new ArrayDeque<Entry>();
+        this.workers = Executors.newFixedThreadPool(Math.max(1, Runtime.getRuntime().availableProcessors()), new ThreadFactory()
+        {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "Chat Message Parser " + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Parse the specified message on a worker thread, then add it to the chat once every message submitted before it
+     * has been added
+     *
+     * @param msg
+     */
+    public void submit(final Message msg)
+    {
+        final Entry entry = new Entry(msg, null, false);
+        synchronized (pending)
+        {
+            pending.addLast(entry);
+        }
+        updateWaitingCount(1);
+
+        workers.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                parse(entry);
+            }
+        });
+    }
+
+    /**
+     * Do the specified action to the chat once every message submitted so far has been added to it, or right away if
+     * there are none waiting
+     *
+     * @param action
+     */
+    public void submitAfterPending(Runnable action)
+    {
+        synchronized (pending)
+        {
+            if (pending.isEmpty())
+            {
+                action.run();
+            }
+            else
+            {
+                pending.addLast(new Entry(null, action, true));
+            }
+        }
+    }
+
+    private void parse(Entry entry)
+    {
+        final long start = System.nanoTime();
+        try
+        {
+            if (chat.isLoaded())
+            {
+                entry.message.getText(chat.getEmojiManager(), chat.getMessageConfig(), chat.getEmojiConfig());
+            }
+        }
+        catch (Exception e)
+        {
+            // The message is still added, and its text parsed again when it's first drawn
+            logger.error("Unable to parse message", e);
+        }
+        updateParseTime(System.nanoTime() - start);
+
+        synchronized (pending)
+        {
+            entry.ready = true;
+            passOnReady();
+        }
+    }
+
+    /**
+     * Pass on everything at the front of the pending entries that is ready, in order
+     */
+    private void passOnReady()
+    {
+        Entry next;
+        while ((next = pending.peekFirst()) != null && next.ready)
+        {
+            pending.pollFirst();
+            try
+            {
+                if (next.message != null)
+                {
+                    updateWaitingCount(-1);
+                    chat.addMessage(next.message);
+                }
+                else
+                {
+                    next.action.run();
+                }
+            }
+            catch (Exception e)
+            {
+                logger.error("Unable to pass parsed message on to the chat", e);
+            }
+        }
+    }
+
+    private synchronized void updateParseTime(long nanos)
+    {
+        parsedCount++;
+        parseNanos += nanos;
+    }
+
+    private synchronized void updateWaitingCount(int change)
+    {
+        waitingCount += change;
+    }
+
+    /**
+     * Get a summary of how many messages have been parsed and how long they took, to be displayed for debugging
+     *
+     * @return statistics
+     */
+    public synchronized String getStatistics()
+    {
+        return "Parser: " + parsedCount + " parsed, " + (parsedCount == 0 ? 0 : parseNanos / parsedCount / 1000L) + " us average, " + waitingCount + " waiting";
+    }
+}
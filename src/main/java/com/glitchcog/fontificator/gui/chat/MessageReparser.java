@@ -0,0 +1,262 @@
+package com.glitchcog.fontificator.gui.chat;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.apache.log4j.Logger;
+
+import com.glitchcog.fontificator.bot.Message;
+import com.glitchcog.fontificator.config.ConfigEmoji;
+import com.glitchcog.fontificator.config.ConfigMessage;
+import com.glitchcog.fontificator.emoji.EmojiManager;
+import com.glitchcog.fontificator.sprite.SpriteText;
+
+/**
+ * Parses the text of every message in the chat again when the message or emoji configuration changes, split across a
+ * fork/join pool, instead of one message at a time as each is next drawn. The messages keep their old text until all
+ * of them have been parsed again, and then every message gets its new text between two frames, so the chat never
+ * shows a mix of old and new text or stalls partway through.
+ *
+ * The reparser is only checked and its results only applied while the chat holds its render lock, so it needs no
+ * locking of its own. A reparse still going when the configuration changes again is cancelled, and the next one starts
+ * over with every message.
+ *
+ * @author Matt Yanos
+ */
+public class MessageReparser
+{
+    private static final Logger logger = Logger.getLogger(MessageReparser.class);
+
+    /**
+     * The fewest messages a piece of the work is split into
+     */
+    private static final int MESSAGES_PER_TASK = 32;
+
+    private final ChatPanel chat;
+
+    private final ForkJoinPool pool;
+
+    /**
+     * Whether the configuration has been checked yet
+     */
+    private boolean checked;
+
+    /**
+     * The generations of the message and emoji configuration the messages are being, or have been, parsed again
+     * against
+     */
+    private long messageGeneration;
+
+    private long emojiGeneration;
+
+    /**
+     * The reparse last started, to be cancelled if the configuration changes again before it's done
+     */
+    private Reparse current;
+
+    private volatile long reparseCount;
+
+    private volatile long lastMessageCount;
+
+    private volatile long lastDurationMillis;
+
+    public MessageReparser(ChatPanel chat)
+    {
+        this.chat = chat;
+        this.pool = new ForkJoinPool();
+    }
+
+    /**
+     * Check whether the configuration has changed since the last check and, if it has, hold the text the messages have
+     * and start parsing them all again in the background. Only to be called while holding the render lock.
+     *
+     * @param store
+     *            The messages in the chat
+     * @param emojiManager
+     * @param messageConfig
+     * @param emojiConfig
+     */
+    void check(MessageStore store, EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+    {
+        if (checked && messageGeneration == messageConfig.getGeneration() && emojiGeneration == emojiConfig.getGeneration())
+        {
+            return;
+        }
+
+        final boolean firstCheck = !checked;
+        checked = true;
+        messageGeneration = messageConfig.getGeneration();
+        emojiGeneration = emojiConfig.getGeneration();
+        final Message[] messages = store.toArray();
+        if (firstCheck || messages.length == 0)
+        {
+            // Nothing has been parsed against an older configuration yet
+            return;
+        }
+
+        if (current != null)
+        {
+            current.cancelled = true;
+        }
+
+        // Holding the text at the new generation also means nothing parsed by an earlier reparse can replace it
+        for (Message msg : messages)
+        {
+            msg.holdText(messageGeneration, emojiGeneration);
+        }
+        current = new Reparse(messages, new SpriteText[messages.length], messageGeneration, emojiGeneration, emojiManager, messageConfig, emojiConfig);
+        pool.execute(current);
+    }
+
+    /**
+     * Give the messages their new text between two frames, unless the configuration changed again while they were
+     * being parsed
+     */
+    private void apply(final Reparse reparse, final long durationMillis)
+    {
+        chat.runBetweenFrames(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (reparse.cancelled || reparse.messageGeneration != messageGeneration || reparse.emojiGeneration != emojiGeneration)
+                {
+                    return;
+                }
+                if (current == reparse)
+                {
+                    current = null;
+                }
+                // If the reparse failed, every message is left out of date instead, so it's parsed again when next drawn
+                for (int i = 0; i < reparse.messages.length; i++)
+                {
+                    reparse.messages[i].replaceText(reparse.failed ? null : reparse.parsed[i], reparse.messageGeneration, reparse.emojiGeneration);
+                }
+                reparseCount++;
+                lastMessageCount = reparse.messages.length;
+                lastDurationMillis = durationMillis;
+            }
+        });
+    }
+
+    /**
+     * The whole of one reparse, which splits itself up and applies the results once all the pieces are done
+     */
+    private class Reparse extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Message[] messages;
+
+        private final SpriteText[] parsed;
+
+        private final long messageGeneration;
+
+        private final long emojiGeneration;
+
+        private final EmojiManager emojiManager;
+
+        private final ConfigMessage messageConfig;
+
+        private final ConfigEmoji emojiConfig;
+
+        /**
+         * Set when the configuration changes again before this reparse is done, so the rest of it is skipped
+         */
+        private volatile boolean cancelled;
+
+        /**
+         * Set when parsing a message throws, so the rest of the reparse is skipped and none of it is used
+         */
+        private volatile boolean failed;
+
+        private Reparse(Message[] messages, SpriteText[] parsed, long messageGeneration, long emojiGeneration, EmojiManager emojiManager, ConfigMessage messageConfig, ConfigEmoji emojiConfig)
+        {
+            this.messages = messages;
+            this.parsed = parsed;
+            this.messageGeneration = messageGeneration;
+            this.emojiGeneration = emojiGeneration;
+            this.emojiManager = emojiManager;
+            this.messageConfig = messageConfig;
+            this.emojiConfig = emojiConfig;
+        }
+
+        @Override
+        protected void compute()
+        {
+            final long start = System.currentTimeMillis();
+            try
+            {
+                new Piece(this, 0, messages.length).invoke();
+            }
+            catch (RuntimeException e)
+            {
+                // Parsing a message isn't expected to fail, so rather than carry on past it, the reparse is dropped. The
+                // other pieces may still be parsing, so none of it is used, and the render thread parses the messages
+                // again itself.
+                failed = true;
+                logger.error("Unable to parse messages again", e);
+            }
+            if (!cancelled)
+            {
+                apply(this, System.currentTimeMillis() - start);
+            }
+        }
+
+        private boolean isStopped()
+        {
+            return cancelled || failed;
+        }
+    }
+
+    /**
+     * A range of the messages of a reparse, parsed directly if it's small enough, otherwise split in two
+     */
+    private static class Piece extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final Reparse reparse;
+
+        private final int from;
+
+        private final int to;
+
+        private Piece(Reparse reparse, int from, int to)
+        {
+            this.reparse = reparse;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (reparse.isStopped())
+            {
+                return;
+            }
+            else if (to - from > MESSAGES_PER_TASK)
+            {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new Piece(reparse, from, mid), new Piece(reparse, mid, to));
+                return;
+            }
+
+            for (int i = from; i < to && !reparse.isStopped(); i++)
+            {
+                reparse.parsed[i] = reparse.messages[i].parseText(reparse.emojiManager, reparse.messageConfig, reparse.emojiConfig);
+            }
+        }
+    }
+
+    /**
+     * Get a summary of how long the last reparse took, to be displayed for debugging
+     *
+     * @return statistics
+     */
+    public String getStatistics()
+    {
+        return "Reparse: " + reparseCount + " runs, last " + lastMessageCount + " messages in " + lastDurationMillis + " ms";
+    }
+}
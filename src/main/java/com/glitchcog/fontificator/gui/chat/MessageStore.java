@@ -0,0 +1,255 @@
+package com.glitchcog.fontificator.gui.chat;
+
+import com.glitchcog.fontificator.bot.Message;
+
+/**
+ * The cache of messages in the chat, oldest first, in a ring buffer big enough for the configured queue size, so adding
+ * a message, dropping the oldest one, counting them, and getting any one of them by its position all take the same
+ * time no matter how many messages there are.
+ *
+ * Every message added is given the next sequence number, which stays the message's sequence number for as long as it
+ * is in the store, even as older messages are dropped. A reader can remember the sequence number it got to and pick up
+ * from there later without going over the messages before it again, checking for null in case the message it gets to
+ * has since been removed.
+ *
+ * @author Matt Yanos
+ */
+public class MessageStore
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private Message[] ring;
+
+    /**
+     * One less than the capacity of the ring, which is a power of two, to find the slot of a sequence number
+     */
+    private int mask;
+
+    /**
+     * The sequence number of the oldest message
+     */
+    private long firstSequence;
+
+    /**
+     * One past the sequence number of the newest message
+     */
+    private long endSequence;
+
+    /**
+     * The number of times the messages have been copied into a new ring because the queue size changed
+     */
+    private long resizeCount;
+
+    public MessageStore()
+    {
+        allocate(MIN_CAPACITY);
+    }
+
+    private void allocate(int capacity)
+    {
+        ring = new Message[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Add a message to the end, making room for it if the ring is full
+     *
+     * @param msg
+     * @param queueSize
+     *            The configured number of messages to be kept, used to size the ring
+     */
+    public synchronized void add(Message msg, int queueSize)
+    {
+        if (size() == ring.length)
+        {
+            resize(getCapacity(Math.max(queueSize, size()) + 1));
+        }
+        else if (ring.length > MIN_CAPACITY && ring.length >= getCapacity(queueSize + 1) * 4 && size() < getCapacity(queueSize + 1))
+        {
+            // The queue size has been turned well down, so give back the room that won't be used again
+            resize(getCapacity(queueSize + 1));
+        }
+        ring[slot(endSequence)] = msg;
+        endSequence++;
+    }
+
+    /**
+     * Move the messages into a ring of the specified capacity, which must have room for all of them
+     *
+     * @param capacity
+     */
+    private void resize(int capacity)
+    {
+        Message[] oldRing = ring;
+        final int oldMask = mask;
+        allocate(capacity);
+        for (long seq = firstSequence; seq < endSequence; seq++)
+        {
+            ring[slot(seq)] = oldRing[(int) (seq & oldMask)];
+        }
+        resizeCount++;
+    }
+
+    private static int getCapacity(int count)
+    {
+        return Math.max(MIN_CAPACITY, Integer.highestOneBit(Math.max(1, count) - 1) << 1);
+    }
+
+    private int slot(long seq)
+    {
+        return (int) (seq & mask);
+    }
+
+    /**
+     * Remove and return the oldest message
+     *
+     * @return the message, or null if there are none
+     */
+    public synchronized Message removeFirst()
+    {
+        if (size() == 0)
+        {
+            return null;
+        }
+        final int slot = slot(firstSequence);
+        Message msg = ring[slot];
+        ring[slot] = null;
+        firstSequence++;
+        return msg;
+    }
+
+    /**
+     * Remove the specified message from wherever it is. The messages before it are moved up to fill its place, so the
+     * messages after it keep their sequence numbers. Messages are almost always removed from the front, where there are
+     * none to move.
+     *
+     * @param msg
+     * @return whether the message was in the store
+     */
+    public synchronized boolean remove(Message msg)
+    {
+        for (long seq = firstSequence; seq < endSequence; seq++)
+        {
+            if (ring[slot(seq)] == msg)
+            {
+                for (long moveSeq = seq; moveSeq > firstSequence; moveSeq--)
+                {
+                    ring[slot(moveSeq)] = ring[slot(moveSeq - 1)];
+                }
+                ring[slot(firstSequence)] = null;
+                firstSequence++;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Remove all the messages
+     */
+    public synchronized void clear()
+    {
+        while (size() > 0)
+        {
+            removeFirst();
+        }
+    }
+
+    /**
+     * Get the number of messages
+     *
+     * @return size
+     */
+    public synchronized int size()
+    {
+        return (int) (endSequence - firstSequence);
+    }
+
+    /**
+     * Get the oldest message
+     *
+     * @return the message, or null if there are none
+     */
+    public synchronized Message peek()
+    {
+        return size() == 0 ? null : ring[slot(firstSequence)];
+    }
+
+    /**
+     * Get the message at the specified position, counting from the oldest
+     *
+     * @param index
+     * @return the message, or null if there is no message at that position
+     */
+    public synchronized Message get(int index)
+    {
+        return index < 0 || index >= size() ? null : ring[slot(firstSequence + index)];
+    }
+
+    /**
+     * Get the message at the specified position, counting back from the newest
+     *
+     * @param index
+     * @return the message, or null if there is no message at that position
+     */
+    public synchronized Message getFromNewest(int index)
+    {
+        return get(size() - index - 1);
+    }
+
+    /**
+     * Get the message with the specified sequence number
+     *
+     * @param seq
+     * @return the message, or null if it is no longer in the store or hasn't been added yet
+     */
+    public synchronized Message getBySequence(long seq)
+    {
+        return seq < firstSequence || seq >= endSequence ? null : ring[slot(seq)];
+    }
+
+    /**
+     * Get the sequence number of the oldest message, or the one the next message will get if there are none
+     *
+     * @return firstSequence
+     */
+    public synchronized long getFirstSequence()
+    {
+        return firstSequence;
+    }
+
+    /**
+     * Get the sequence number the next message added will get
+     *
+     * @return endSequence
+     */
+    public synchronized long getEndSequence()
+    {
+        return endSequence;
+    }
+
+    /**
+     * Copy the messages into an array, oldest first
+     *
+     * @return messages
+     */
+    public synchronized Message[] toArray()
+    {
+        Message[] copy = new Message[size()];
+        for (int i = 0; i < copy.length; i++)
+        {
+            copy[i] = ring[slot(firstSequence + i)];
+        }
+        return copy;
+    }
+
+    /**
+     * Get a summary of the size of the ring, to be displayed for debugging
+     *
+     * @return statistics
+     */
+    public synchronized String getStatistics()
+    {
+        return "Store: " + size() + " of " + ring.length + " slots, " + resizeCount + " resizes";
+    }
+}
@@ -0,0 +1,539 @@
+package com.glitchcog.fontificator.gui.chat.clock;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+
+import com.glitchcog.fontificator.bot.Message;
+import com.glitchcog.fontificator.gui.chat.ActiveRenderer;
+import com.glitchcog.fontificator.gui.chat.ChatPanel;
+import com.glitchcog.fontificator.gui.chat.MessageStore;
+
+/**
+ * The one thread that moves the chat along over time: it rolls out new messages at the configured message speed, wakes
+ * up exactly when the next message is due to expire and evicts it from the chat, and turns those changes and the frames
+ * of animated emoji into repaints. However many of those happen within a frame, the chat is repainted at most once per
+ * frame. When nothing is rolling out, nothing is about to expire, and no repaint is waiting, the thread sleeps until
+ * something changes.
+ *
+ * @author Matt Yanos
+ */
+public class FrameScheduler implements Runnable
+{
+    private static final Logger logger = Logger.getLogger(FrameScheduler.class);
+
+    /**
+     * The shortest time in milliseconds between two repaints
+     */
+    public static final long FRAME_PERIOD = 1000L / ActiveRenderer.TARGET_FRAME_RATE;
+
+    /**
+     * The time to wake up when there is nothing to wake up for
+     */
+    private static final long NEVER = Long.MAX_VALUE;
+
+    private static final int MIN_EXPIRATION_CAPACITY = 16;
+
+    /**
+     * The most messages that wait for the ones before them to finish rolling out. Any more than this, and the oldest
+     * ones roll out alongside the first, so a long backlog doesn't keep growing.
+     */
+    private static final int MAX_WAITING_MESSAGES = 4;
+
+    /**
+     * Orders messages by when they were completely drawn, which is also the order they expire in for any expiration
+     * time
+     */
+    private static final Comparator<Expiration> EXPIRATION_ORDER = new Comparator<Expiration>()
+    {
+        @Override
+        public int compare(Expiration a, Expiration b)
+        {
+            return Long.compare(a.baseDeadline, b.baseDeadline);
+        }
+    };
+
+    /**
+     * A message waiting to expire, with its deadline recorded when it was queued. A message's completed time can still
+     * change after that, like when it's censored, which would break the order of the queue if it were read from the
+     * message each time. Whatever changed it schedules the expirations again to pick up the new deadline.
+     */
+    private static final class Expiration
+    {
+        private final Message message;
+
+        /**
+         * The deadline for an expiration time of zero, which the expiration time is added onto
+         */
+        private final long baseDeadline;
+
+        private Expiration(Message message)
+        {
+            this.message = message;
+            this.baseDeadline = message.getExpirationDeadline(0);
+        }
+
+        private long getDeadline(int expirationTime)
+        {
+            return baseDeadline == Long.MAX_VALUE ? NEVER : baseDeadline + expirationTime * 1000L;
+        }
+    }
+
+    private final ChatPanel chat;
+
+    private Thread thread;
+
+    /**
+     * Whether there might be a message that still needs to be rolled out
+     */
+    private boolean rolloutActive;
+
+    /**
+     * Whether the rollout was started again while a step was being taken, so running out of messages during that step
+     * doesn't stop it
+     */
+    private boolean rolloutRestarted;
+
+    /**
+     * The sequence number in the message store to look for messages to roll out from. Every message before it is
+     * completely drawn, and stays that way, so they don't need to be looked at again.
+     */
+    private long rolloutSequence;
+
+    /**
+     * When the draw cursors of the messages being rolled out next need advancing, which is whenever the next character
+     * is due, but no more often than once a frame
+     */
+    private long nextStepTime;
+
+    /**
+     * Whether the whole chat needs to be repainted in the next frame
+     */
+    private boolean framePending;
+
+    /**
+     * The message rolled out since the last frame, if that is the only thing that has changed, so only the characters
+     * revealed between the two draw cursors need to be repainted
+     */
+    private Message rolloutMessage;
+
+    private float rolloutFromCursor;
+
+    private float rolloutToCursor;
+
+    /**
+     * When the oldest change waiting for the next frame was made
+     */
+    private long pendingSince;
+
+    private long lastFrameTime;
+
+    /**
+     * The completely drawn messages that will expire, soonest first. Only filled while messages are expirable.
+     */
+    private final PriorityQueue<Expiration> expirations;
+
+    private long frameCount;
+
+    private long mergedCount;
+
+    private long skippedCount;
+
+    public FrameScheduler(ChatPanel chat)
+    {
+        this.chat = chat;
+        this.expirations = new PriorityQueue<Expiration>(MIN_EXPIRATION_CAPACITY, EXPIRATION_ORDER);
+    }
+
+    /**
+     * Start the scheduler thread if it isn't already running
+     */
+    public synchronized void start()
+    {
+        if (thread == null)
+        {
+            thread = new Thread(this, "Chat Frame Scheduler");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Start rolling out messages, if they aren't already being rolled out. Called whenever a message is added or might be
+     * reintroduced to the chat, by being uncensored for example. The rollout stops again on its own once all the
+     * messages are completely drawn.
+     */
+    public synchronized void startRollout()
+    {
+        if (!rolloutActive)
+        {
+            rolloutActive = true;
+            nextStepTime = System.currentTimeMillis();
+        }
+        rolloutRestarted = true;
+        notifyAll();
+    }
+
+    /**
+     * Restart the rollout with the next step due immediately, for when the message speed has been changed
+     */
+    public synchronized void restartRollout()
+    {
+        rolloutActive = true;
+        rolloutRestarted = true;
+        nextStepTime = System.currentTimeMillis();
+        notifyAll();
+    }
+
+    /**
+     * Request that the whole chat be repainted in the next frame
+     */
+    public synchronized void requestFrame()
+    {
+        if (isFramePending())
+        {
+            mergedCount++;
+        }
+        else
+        {
+            pendingSince = System.currentTimeMillis();
+        }
+        framePending = true;
+        rolloutMessage = null;
+        notifyAll();
+    }
+
+    /**
+     * Schedule the specified message to be evicted from the chat once it expires, if it is completely drawn and
+     * messages are expirable. Messages that complete their rollout are scheduled by the scheduler itself, so this is
+     * for messages that are completed some other way, like by being censored as they're added.
+     * 
+     * @param msg
+     */
+    public synchronized void scheduleExpiration(Message msg)
+    {
+        if (msg.isCompletelyDrawn() && chat.getMessageConfig().isMessageExpirable())
+        {
+            expirations.add(new Expiration(msg));
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stop waiting for the specified messages to expire, for when they have left the chat some other way, like by being
+     * trimmed off the front to keep to the queue size. The oldest messages are usually the first to expire, so they are
+     * usually found right at the front of the expiration queue.
+     * 
+     * @param removed
+     */
+    public synchronized void cancelExpirations(List<Message> removed)
+    {
+        for (Message msg : removed)
+        {
+            Iterator<Expiration> iter = expirations.iterator();
+            while (iter.hasNext())
+            {
+                if (iter.next().message == msg)
+                {
+                    iter.remove();
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Schedule the expiration of every completely drawn message in the chat again, for when messages have become
+     * expirable or stopped being expirable, or when censoring could have completed any of them
+     */
+    public synchronized void refreshExpirations()
+    {
+        expirations.clear();
+        if (chat.getMessageConfig().isMessageExpirable())
+        {
+            for (Message msg : chat.getMessageStore().toArray())
+            {
+                if (msg.isCompletelyDrawn())
+                {
+                    expirations.add(new Expiration(msg));
+                }
+            }
+        }
+        notifyAll();
+    }
+
+    /**
+     * Get when the next message will expire
+     * 
+     * @return time in milliseconds, or NEVER if no message will
+     */
+    private long getNextExpiration()
+    {
+        final Expiration next = expirations.peek();
+        if (next == null || !chat.getMessageConfig().isMessageExpirable())
+        {
+            return NEVER;
+        }
+        return next.getDeadline(chat.getMessageConfig().getExpirationTime());
+    }
+
+    /**
+     * Remove the messages that have expired by the specified time from the expiration queue
+     * 
+     * @param now
+     * @return the expired messages, oldest first
+     */
+    private synchronized List<Message> pollExpired(long now)
+    {
+        List<Message> expired = new ArrayList<Message>();
+        while (getNextExpiration() <= now)
+        {
+            expired.add(expirations.poll().message);
+        }
+        return expired;
+    }
+
+    private boolean isFramePending()
+    {
+        return framePending || rolloutMessage != null;
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            try
+            {
+                tick();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (Exception e)
+            {
+                logger.error("Unable to update the chat", e);
+            }
+        }
+    }
+
+    /**
+     * Wait until the next thing is due, then do it
+     *
+     * @throws InterruptedException
+     */
+    private void tick() throws InterruptedException
+    {
+        final long now;
+        final boolean stepDue;
+        final boolean expirationDue;
+        synchronized (this)
+        {
+            now = System.currentTimeMillis();
+            final long nextExpirationTime = getNextExpiration();
+            final long nextFrameTime = isFramePending() ? lastFrameTime + FRAME_PERIOD : NEVER;
+            final long nextWakeTime = Math.min(rolloutActive ? nextStepTime : NEVER, Math.min(nextExpirationTime, nextFrameTime));
+            if (nextWakeTime == NEVER)
+            {
+                wait();
+                return;
+            }
+            else if (nextWakeTime > now)
+            {
+                wait(nextWakeTime - now);
+                return;
+            }
+            stepDue = rolloutActive && nextStepTime <= now;
+            expirationDue = nextExpirationTime <= now;
+            rolloutRestarted = false;
+        }
+
+        if (stepDue)
+        {
+            final boolean stepped = stepRollout(now);
+            synchronized (this)
+            {
+                if (!stepped && !rolloutRestarted)
+                {
+                    rolloutActive = false;
+                }
+                nextStepTime = now + Math.max(FRAME_PERIOD, chat.getMessageConfig().getMessageDelay());
+            }
+        }
+
+        if (expirationDue)
+        {
+            List<Message> expired = pollExpired(now);
+            if (!expired.isEmpty())
+            {
+                chat.evictMessages(expired);
+                requestFrame();
+            }
+        }
+
+        issueFrame(now);
+    }
+
+    /**
+     * Advance the draw cursors of the messages being rolled out to where they should be at the specified time. This is
+     * the first message that isn't completely drawn, plus as many of the ones after it as it takes to leave no more than
+     * MAX_WAITING_MESSAGES waiting.
+     *
+     * @param now
+     * @return whether there was a message to roll out
+     */
+    private boolean stepRollout(long now)
+    {
+        final MessageStore store = chat.getMessageStore();
+        final long endSequence = store.getEndSequence();
+        rolloutSequence = Math.max(rolloutSequence, store.getFirstSequence());
+        while (rolloutSequence < endSequence)
+        {
+            Message msg = store.getBySequence(rolloutSequence);
+            if (msg != null && !msg.isCompletelyDrawn())
+            {
+                break;
+            }
+            rolloutSequence++;
+        }
+
+        int incompleteCount = 0;
+        for (long seq = rolloutSequence; seq < endSequence; seq++)
+        {
+            Message msg = store.getBySequence(seq);
+            if (msg != null && isRollingOut(msg))
+            {
+                incompleteCount++;
+            }
+        }
+
+        int rolloutCount = Math.max(1, incompleteCount - MAX_WAITING_MESSAGES);
+        for (long seq = rolloutSequence; seq < endSequence && rolloutCount > 0; seq++)
+        {
+            Message msg = store.getBySequence(seq);
+            if (msg == null || !isRollingOut(msg))
+            {
+                continue;
+            }
+            final float previousDrawCursor = msg.getDrawCursor();
+            msg.advanceDrawCursor(now, chat.getEmojiManager(), chat.getMessageConfig(), chat.getEmojiConfig());
+            if (msg.getDrawCursor() != previousDrawCursor)
+            {
+                rolloutStepped(msg, previousDrawCursor, msg.getDrawCursor());
+            }
+            if (msg.isCompletelyDrawn())
+            {
+                scheduleExpiration(msg);
+            }
+            rolloutCount--;
+        }
+        return incompleteCount > 0;
+    }
+
+    /**
+     * Get whether the specified message still needs to be rolled out
+     *
+     * @param msg
+     * @return rollingOut
+     */
+    private boolean isRollingOut(Message msg)
+    {
+        return !msg.isCompletelyDrawn() && !(msg.isCensored() && chat.isCensorshipEnabled());
+    }
+
+    /**
+     * Add a step of the rollout to the next frame. Steps of the same message are merged into a single repaint of the
+     * characters revealed by all of them, but anything more than that means the whole chat is repainted.
+     *
+     * @param msg
+     * @param previousDrawCursor
+     * @param drawCursor
+     */
+    private synchronized void rolloutStepped(Message msg, float previousDrawCursor, float drawCursor)
+    {
+        if (framePending)
+        {
+            mergedCount++;
+        }
+        else if (rolloutMessage == null)
+        {
+            rolloutMessage = msg;
+            rolloutFromCursor = previousDrawCursor;
+            rolloutToCursor = drawCursor;
+            pendingSince = System.currentTimeMillis();
+        }
+        else if (rolloutMessage == msg)
+        {
+            rolloutToCursor = drawCursor;
+            mergedCount++;
+        }
+        else
+        {
+            framePending = true;
+            rolloutMessage = null;
+            mergedCount++;
+        }
+    }
+
+    /**
+     * Repaint the chat if anything is waiting for a frame and a frame period has passed since the last one
+     *
+     * @param now
+     */
+    private void issueFrame(long now)
+    {
+        final boolean fullFrame;
+        final Message msg;
+        final float fromCursor;
+        final float toCursor;
+        synchronized (this)
+        {
+            if (!isFramePending() || lastFrameTime + FRAME_PERIOD > now)
+            {
+                return;
+            }
+
+            // A frame that goes out more than a frame period after it was due means at least one frame was skipped
+            final long lateness = now - Math.max(pendingSince, lastFrameTime + FRAME_PERIOD);
+            if (lateness > FRAME_PERIOD)
+            {
+                skippedCount += lateness / FRAME_PERIOD;
+            }
+
+            fullFrame = framePending;
+            msg = rolloutMessage;
+            fromCursor = rolloutFromCursor;
+            toCursor = rolloutToCursor;
+            framePending = false;
+            rolloutMessage = null;
+            lastFrameTime = now;
+            frameCount++;
+        }
+
+        if (fullFrame)
+        {
+            chat.repaintMessages();
+        }
+        else
+        {
+            chat.repaintRollout(msg, fromCursor, toCursor);
+        }
+    }
+
+    /**
+     * Get a summary of how many repaints were issued and how many changes were merged into them or were late, to be
+     * displayed for debugging
+     *
+     * @return statistics
+     */
+    public synchronized String getStatistics()
+    {
+        return "Scheduler: " + frameCount + " frames, " + mergedCount + " merged, " + skippedCount + " skipped, " + expirations.size() + " expiring";
+    }
+}
@@ -252,6 +252,7 @@ public class ControlWindow extends JDialog
         setAlwaysOnTopMenu(fProps.getChatConfig().isAlwaysOnTop());
         setRememberPositionMenu(fProps.getChatConfig().isRememberPosition());
         setAntiAliasMenu(fProps.getChatConfig().isAntiAlias());
+        setActiveRenderingMenu(fProps.getChatConfig().isActiveRendering());
 
         setupHelp();
 
@@ -345,10 +346,11 @@ public class ControlWindow extends JDialog
 
         /* View Menu Item Text */
         final String strAntiAlias = "Anti-Aliased";
+        final String strActiveRendering = "Active Rendering";
         final String strViewTop = "Always On Top";
         final String strRememberPos = "Remember Chat Window Position";
         final String strViewHide = "Hide Control Window";
-        final MenuComponent[] viewComponents = new MenuComponent[] { new MenuComponent(strAntiAlias, KeyEvent.VK_A, null, true), null, new MenuComponent(strViewTop, KeyEvent.VK_T, null, true), new MenuComponent(strRememberPos, KeyEvent.VK_P, null, true), new MenuComponent(strViewHide, KeyEvent.VK_H, KeyStroke.getKeyStroke(KeyEvent.VK_H, Event.CTRL_MASK)) };
+        final MenuComponent[] viewComponents = new MenuComponent[] { new MenuComponent(strAntiAlias, KeyEvent.VK_A, null, true), new MenuComponent(strActiveRendering, KeyEvent.VK_R, null, true), null, new MenuComponent(strViewTop, KeyEvent.VK_T, null, true), new MenuComponent(strRememberPos, KeyEvent.VK_P, null, true), new MenuComponent(strViewHide, KeyEvent.VK_H, KeyStroke.getKeyStroke(KeyEvent.VK_H, Event.CTRL_MASK)) };
 
         /* Message Menu Item Text */
         final String strMsgMsg = "Message Management";
@@ -396,6 +398,12 @@ public class ControlWindow extends JDialog
                     controlTabs.setAntiAlias(checkBox.isSelected());
                     chatWindow.getChatPanel().repaint();
                 }
+                else if (strActiveRendering.equals(mi.getText()))
+                {
+                    JCheckBoxMenuItem checkBox = (JCheckBoxMenuItem) e.getSource();
+                    controlTabs.setActiveRendering(checkBox.isSelected());
+                    chatWindow.getChatPanel().setActiveRendering(checkBox.isSelected());
+                }
                 else if (strViewTop.equals(mi.getText()))
                 {
                     JCheckBoxMenuItem checkBox = (JCheckBoxMenuItem) e.getSource();
@@ -695,7 +703,7 @@ public class ControlWindow extends JDialog
         ChatPanel chat = chatWindow.getChatPanel();
         BufferedImage chatImage = new BufferedImage(chat.getWidth(), chat.getHeight(), screenshotOptions.isTransparencyEnabled() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
         Graphics chatGraphics = chatImage.getGraphics();
-        chat.paint(chatGraphics);
+        chat.drawChat(chatGraphics);
 
         final boolean chromaEnabled = Boolean.toString(true).equalsIgnoreCase(fProps.getProperty(FontificatorProperties.KEY_CHAT_CHROMA_ENABLED));
         if (screenshotOptions.isTransparencyEnabled() && chromaEnabled)
@@ -774,12 +782,12 @@ public class ControlWindow extends JDialog
 
     public void setAlwaysOnTopMenu(boolean alwaysOnTop)
     {
-        ((JCheckBoxMenuItem) (getJMenuBar().getMenu(2).getItem(2))).setSelected(alwaysOnTop);
+        ((JCheckBoxMenuItem) (getJMenuBar().getMenu(2).getItem(3))).setSelected(alwaysOnTop);
     }
 
     public void setRememberPositionMenu(boolean rememberPosition)
     {
-        ((JCheckBoxMenuItem) (getJMenuBar().getMenu(2).getItem(3))).setSelected(rememberPosition);
+        ((JCheckBoxMenuItem) (getJMenuBar().getMenu(2).getItem(4))).setSelected(rememberPosition);
     }
 
     public void setAntiAliasMenu(boolean antiAlias)
@@ -787,6 +795,11 @@ public class ControlWindow extends JDialog
         ((JCheckBoxMenuItem) (getJMenuBar().getMenu(2).getItem(0))).setSelected(antiAlias);
     }
 
+    public void setActiveRenderingMenu(boolean activeRendering)
+    {
+        ((JCheckBoxMenuItem) (getJMenuBar().getMenu(2).getItem(1))).setSelected(activeRendering);
+    }
+
     public void clearUsernameCases()
     {
         bot.clearUsernameCases();
@@ -41,7 +41,7 @@ public class MessageCheckListModel extends DefaultTableModel
     @Override
     public int getRowCount()
     {
-        return chat == null ? 0 : chat.getMessageQueue().size();
+        return chat == null ? 0 : chat.getMessageStore().size();
     }
 
     @Override
@@ -59,9 +59,13 @@ public class MessageCheckListModel extends DefaultTableModel
     @Override
     public Object getValueAt(int rowIndex, int columnIndex)
     {
-        Message[] messages = getMessages();
-        Message msg = messages[messages.length - rowIndex - 1];
-        if (columnIndex == 0)
+        Message msg = getMessage(rowIndex);
+        if (msg == null)
+        {
+            // The message has been removed from the chat since the table was last updated
+            return null;
+        }
+        else if (columnIndex == 0)
         {
             return msg.getTimestamp();
         }
@@ -89,18 +93,28 @@ public class MessageCheckListModel extends DefaultTableModel
     {
         if (columnIndex == TOGGLE_COLUMN_INDEX)
         {
-            Message[] messages = getMessages();
-            Message msg = messages[messages.length - rowIndex - 1];
+            Message msg = getMessage(rowIndex);
+            if (msg == null)
+            {
+                return;
+            }
             msg.setCensored((Boolean)(aValue == null ? false : aValue), chat.isCensorshipEnabled());
             msg.setManualCensorship(true);
             list.revalidateTable();
             chat.repaint();
             chat.initMessageRollout();
+            chat.refreshCensorship();
         }
     }
 
-    private Message[] getMessages()
+    /**
+     * Get the message in the specified row, which lists the newest message first
+     * 
+     * @param rowIndex
+     * @return the message, or null if there is none in that row
+     */
+    private Message getMessage(int rowIndex)
     {
-        return chat.getMessageQueue().toArray(new Message[chat.getMessageQueue().size()]);
+        return chat.getMessageStore().getFromNewest(rowIndex);
     }
 }
@@ -252,7 +252,7 @@ public class CollagePanel extends JPanel
 
         BufferedImage chatImage = new BufferedImage(width, height, transparencyBox.isSelected() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
         Graphics chatGraphics = chatImage.getGraphics();
-        chat.paint(chatGraphics);
+        chat.drawChat(chatGraphics);
 
         if (!imageText.isEmpty())
         {
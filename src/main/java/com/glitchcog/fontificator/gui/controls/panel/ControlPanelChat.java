@@ -518,6 +518,8 @@ public class ControlPanelChat extends ControlPanelBase
         ctrlWindow.setAlwaysOnTopMenu(config.isAlwaysOnTop());
         ctrlWindow.setRememberPositionMenu(config.isRememberPosition());
         ctrlWindow.setAntiAliasMenu(config.isAntiAlias());
+        ctrlWindow.setActiveRenderingMenu(config.isActiveRendering());
+        chat.setActiveRendering(config.isActiveRendering());
         setRememberedPosition();
     }
 
@@ -611,4 +613,9 @@ public class ControlPanelChat extends ControlPanelBase
         config.setAntiAlias(antiAlias);
     }
 
+    public void setActiveRendering(boolean activeRendering)
+    {
+        config.setActiveRendering(activeRendering);
+    }
+
 }
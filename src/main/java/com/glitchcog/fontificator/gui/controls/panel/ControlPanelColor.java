@@ -62,6 +62,11 @@ public class ControlPanelColor extends ControlPanelBase
      */
     private JCheckBox useTwitchBox;
 
+    /**
+     * Checkbox to indicate whether Twitch username colors should be rounded onto a fixed palette of colors
+     */
+    private JCheckBox quantizeTwitchBox;
+
     /**
      * Checkbox to indicate whether to color join messages
      */
@@ -103,6 +108,7 @@ public class ControlPanelColor extends ControlPanelBase
     protected void build()
     {
         useTwitchBox = new JCheckBox("Override Palette with Twitch Username Colors when Available");
+        quantizeTwitchBox = new JCheckBox("Round Twitch Username Colors to a Fixed Palette");
         joinBox = new JCheckBox("Color Join Messages");
         usernameBox = new JCheckBox("Color Usernames");
         timestampBox = new JCheckBox("Color Timestamps");
@@ -118,6 +124,10 @@ public class ControlPanelColor extends ControlPanelBase
                 {
                     config.setUseTwitchColors(source.isSelected());
                 }
+                else if (quantizeTwitchBox.equals(source))
+                {
+                    config.setQuantizeTwitchColors(source.isSelected());
+                }
                 else if (joinBox.equals(source))
                 {
                     config.setColorJoin(source.isSelected());
@@ -139,6 +149,7 @@ public class ControlPanelColor extends ControlPanelBase
         };
 
         useTwitchBox.addActionListener(boxListener);
+        quantizeTwitchBox.addActionListener(boxListener);
         joinBox.addActionListener(boxListener);
         usernameBox.addActionListener(boxListener);
         timestampBox.addActionListener(boxListener);
@@ -176,6 +187,8 @@ public class ControlPanelColor extends ControlPanelBase
         palettePanel.add(palette, ppGbc);
         ppGbc.gridy++;
         palettePanel.add(useTwitchBox, ppGbc);
+        ppGbc.gridy++;
+        palettePanel.add(quantizeTwitchBox, ppGbc);
 
         GridBagConstraints optionsGbc = new GridBagConstraints(0, 0, 1, 1, 0.0, 1.0, GridBagConstraints.WEST, GridBagConstraints.NONE, DEFAULT_INSETS, 0, 0);
 
@@ -230,6 +243,7 @@ public class ControlPanelColor extends ControlPanelBase
         palette.refreshComponents();
 
         useTwitchBox.setSelected(config.isUseTwitchColors());
+        quantizeTwitchBox.setSelected(config.isQuantizeTwitchColors());
         joinBox.setSelected(config.isColorJoin());
         usernameBox.setSelected(config.isColorUsername());
         messageBox.setSelected(config.isColorMessage());
@@ -256,6 +270,7 @@ public class ControlPanelColor extends ControlPanelBase
         config.setChromaColor(chromaColorButton.getColor());
         config.setPalette(palette.getColors());
         config.setUseTwitchColors(useTwitchBox.isSelected());
+        config.setQuantizeTwitchColors(quantizeTwitchBox.isSelected());
         config.setColorJoin(joinBox.isSelected());
         config.setColorUsername(usernameBox.isSelected());
         config.setColorMessage(messageBox.isSelected());
@@ -10,6 +10,7 @@ import java.util.Random;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
+import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
 import javax.swing.JToggleButton;
@@ -61,6 +62,13 @@ public class ControlPanelDebug extends ControlPanelBase
 
     private ColorButton borderGridColorButton;
 
+    private JLabel renderStatsLabel;
+
+    /**
+     * Updates the render statistics while debugging
+     */
+    private Timer renderStatsClock;
+
     private Random rnd;
 
     private Timer postClock;
@@ -284,6 +292,16 @@ public class ControlPanelDebug extends ControlPanelBase
         drawTextGridBox.addActionListener(refreshListener);
         drawBorderGridBox.addActionListener(refreshListener);
 
+        renderStatsLabel = new JLabel(" ");
+        renderStatsClock = new Timer(1000, new ActionListener()
+        {
+            @Override
+            public void actionPerformed(ActionEvent e)
+            {
+                updateRenderStatistics();
+            }
+        });
+
         JPanel topPanel = new JPanel(new GridBagLayout());
         gbc.gridx = 0;
         gbc.gridy = 0;
@@ -321,6 +339,9 @@ public class ControlPanelDebug extends ControlPanelBase
         gbc.gridwidth = 4;
         gbc.weightx = 1.0;
 
+        add(renderStatsLabel, gbc);
+        gbc.gridy++;
+
         gbc.weighty = 0.1;
         CollagePanel collagePanel = new CollagePanel(chat);
         add(collagePanel, gbc);
@@ -339,6 +360,14 @@ public class ControlPanelDebug extends ControlPanelBase
         add(logBox, gbc);
     }
 
+    private void updateRenderStatistics()
+    {
+        if (chat != null)
+        {
+            renderStatsLabel.setText(chat.getRenderStatistics());
+        }
+    }
+
     @Override
     protected void fillInputFromProperties(FontificatorProperties fProps)
     {
@@ -373,11 +402,14 @@ public class ControlPanelDebug extends ControlPanelBase
         {
             Thread.setDefaultUncaughtExceptionHandler(debugAppender);
             BasicConfigurator.configure(debugAppender);
+            updateRenderStatistics();
+            renderStatsClock.start();
         }
         else
         {
             // Turn off everything before disabling the debug tab
             postClock.stop();
+            renderStatsClock.stop();
             postMessagesButton.setSelected(false);
             drawTextGridBox.setSelected(false);
             drawBorderGridBox.setSelected(false);
@@ -386,11 +386,11 @@ public class ControlPanelMessage extends ControlPanelBase
                     }
                     else if (messageSpeedSlider.getSlider().equals(source))
                     {
-                        config.setMessageSpeed(messageSpeedSlider.getValue(), chat.getMessageProgressor());
+                        config.setMessageSpeed(messageSpeedSlider.getValue(), chat.getFrameScheduler());
                     }
                     else if (expirationTimeSlider.getSlider().equals(source))
                     {
-                        config.setExpirationTime(expirationTimeSlider.getValue(), chat.getMessageExpirer());
+                        config.setExpirationTime(expirationTimeSlider.getValue(), chat.getFrameScheduler());
                         chat.repaint();
                     }
                 }
@@ -594,8 +594,8 @@ public class ControlPanelMessage extends ControlPanelBase
         config.setContentBreaker(contentBreakerInput.getText());
         toggleEnableds();
         config.setQueueSize(queueSizeSlider.getValue());
-        config.setMessageSpeed(messageSpeedSlider.getValue(), chat.getMessageProgressor());
-        config.setExpirationTime(expirationTimeSlider.getValue(), chat.getMessageExpirer());
+        config.setMessageSpeed(messageSpeedSlider.getValue(), chat.getFrameScheduler());
+        config.setExpirationTime(expirationTimeSlider.getValue(), chat.getFrameScheduler());
         config.setHideEmptyBorder(hideEmptyBorder.isSelected());
         config.setHideEmptyBackground(hideEmptyBackground.isSelected());
         config.setCaseResolutionType((UsernameCaseResolutionType) caseTypeDropdown.getSelectedItem());
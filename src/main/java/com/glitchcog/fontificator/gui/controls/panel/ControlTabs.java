@@ -187,6 +187,11 @@ public class ControlTabs extends JTabbedPane
         chatPanel.setAntiAlias(antiAlias);
     }
 
+    public void setActiveRendering(boolean activeRendering)
+    {
+        chatPanel.setActiveRendering(activeRendering);
+    }
+
     public void toggleDebugTab()
     {
         int debugTabIndex = indexOfComponent(debugPanel);
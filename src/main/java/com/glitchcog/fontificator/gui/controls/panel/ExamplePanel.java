@@ -3,6 +3,7 @@ package com.glitchcog.fontificator.gui.controls.panel;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.GridBagConstraints;
+import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
@@ -24,19 +25,22 @@ import org.apache.log4j.Logger;
 
 import com.glitchcog.fontificator.bot.Message;
 import com.glitchcog.fontificator.bot.MessageType;
+import com.glitchcog.fontificator.config.ConfigChat;
 import com.glitchcog.fontificator.config.ConfigColor;
 import com.glitchcog.fontificator.config.ConfigEmoji;
 import com.glitchcog.fontificator.config.ConfigFont;
 import com.glitchcog.fontificator.config.ConfigMessage;
+import com.glitchcog.fontificator.config.EmojiLoadingDisplayStragegy;
 import com.glitchcog.fontificator.config.FontType;
 import com.glitchcog.fontificator.config.MessageCasing;
+import com.glitchcog.fontificator.config.RenderSnapshot;
 import com.glitchcog.fontificator.config.UsernameCaseResolutionType;
 import com.glitchcog.fontificator.config.loadreport.LoadConfigReport;
 import com.glitchcog.fontificator.gui.component.ColorButton;
 import com.glitchcog.fontificator.gui.controls.ControlWindow;
 import com.glitchcog.fontificator.gui.controls.panel.model.DropdownFont;
-import com.glitchcog.fontificator.sprite.SpriteCharacterKey;
 import com.glitchcog.fontificator.sprite.SpriteFont;
+import com.glitchcog.fontificator.sprite.SpriteText;
 
 /**
  * Panel on the Debug Control Panel for creating collages of different presets
@@ -165,6 +169,17 @@ public class ExamplePanel extends JPanel
         fontConfig.setLineSpacing(heightOffset * 2);
         fontConfig.setCharSpacing(0);
 
+        ConfigChat chatConfig = new ConfigChat();
+        chatConfig.load(emptyProps, ignoreReport);
+
+        chatConfig.setChatFromBottom(false);
+        chatConfig.setReverseScrolling(false);
+        chatConfig.setAntiAlias(false);
+        chatConfig.setChromaEnabled(false);
+        chatConfig.setChromaInvert(false);
+        chatConfig.setChromaBorder(new Rectangle());
+        chatConfig.setChromaCornerRadius(0);
+
         ConfigColor colorConfig = new ConfigColor();
         colorConfig.load(emptyProps, ignoreReport);
 
@@ -178,6 +193,8 @@ public class ExamplePanel extends JPanel
         colorConfig.setColorMessage(false);
         colorConfig.setColorJoin(false);
         colorConfig.setUseTwitchColors(true);
+        colorConfig.setQuantizeTwitchColors(false);
+        colorConfig.setTintCacheSize(ConfigColor.DEFAULT_TINT_CACHE_SIZE);
 
         ConfigMessage messageConfig = new ConfigMessage();
         messageConfig.load(emptyProps, ignoreReport);
@@ -198,6 +215,13 @@ public class ExamplePanel extends JPanel
         ConfigEmoji emojiConfig = new ConfigEmoji();
         emojiConfig.load(emptyProps, ignoreReport);
         emojiConfig.setEmojiEnabled(false);
+        emojiConfig.setAnimationEnabled(false);
+        emojiConfig.setEmojiScaleToLine(false);
+        emojiConfig.setBadgeScaleToLine(false);
+        emojiConfig.setBadgeHeightOffset(0);
+        emojiConfig.setEmojiScale(100);
+        emojiConfig.setBadgeScale(100);
+        emojiConfig.setDisplayStrategy(EmojiLoadingDisplayStragegy.UNKNOWN);
 
         Collection<DropdownFont> allFonts = ControlPanelFont.getAllFonts();
         SpriteFont font;
@@ -213,13 +237,14 @@ public class ExamplePanel extends JPanel
             fontConfig.setCharSpacing(ddFont.getDefaultType() == FontType.FIXED_WIDTH ? 0 : 1);
             font = new SpriteFont(fontConfig);
             font.updateForConfigChange();
+            font.checkLayoutVersion(new RenderSnapshot(fontConfig, chatConfig, colorConfig, messageConfig, emojiConfig));
             exampleMsg = getExampleMessage(ddFont.getFontFilename(), lineFormatInput.getText());
-            SpriteCharacterKey[] text = exampleMsg.getText(null, messageConfig, emojiConfig);
+            SpriteText text = exampleMsg.getText(null, messageConfig, emojiConfig);
             height += font.getLineHeightScaled();
             int msgWidth = xOffset * 2;
-            for (int c = 0; c < text.length; c++)
+            for (int c = 0; c < text.length(); c++)
             {
-                msgWidth += font.getCharacterWidth(null, text[c], emojiConfig);
+                msgWidth += font.getCharacterWidth(null, text, c);
             }
             width = (int) Math.max(width, msgWidth);
         }
@@ -232,15 +257,16 @@ public class ExamplePanel extends JPanel
             fontConfig.setFontFilename(ddFont.getFontFilename());
             fontConfig.setFontType(ddFont.getDefaultType());
             fontConfig.setCharSpacing(ddFont.getDefaultType() == FontType.FIXED_WIDTH ? 0 : 1);
+            colorConfig.setFgColor(fontColorButton.getColor());
             font = new SpriteFont(fontConfig);
             font.updateForConfigChange();
+            font.checkLayoutVersion(new RenderSnapshot(fontConfig, chatConfig, colorConfig, messageConfig, emojiConfig));
             exampleMsg = getExampleMessage(ddFont.getFontFilename(), lineFormatInput.getText());
             exampleMsg.setCompletelyDrawn();
             exampleGraphics.setColor(bgColorButton.getColor());
             final int heightScaled = font.getLineHeightScaled();
             exampleGraphics.fillRect(0, y, width, y + heightScaled);
-            colorConfig.setFgColor(fontColorButton.getColor());
-            font.drawMessage(exampleGraphics, exampleGraphics.getFontMetrics(), exampleMsg, fontColorButton.getColor(), colorConfig, messageConfig, emojiConfig, null, xOffset, (int) (y + heightOffset * fontConfig.getFontScale()), 0, Integer.MAX_VALUE, Integer.MAX_VALUE, false, null, null, true);
+            font.drawMessage(exampleGraphics, exampleGraphics.getFontMetrics(), exampleMsg, fontColorButton.getColor(), messageConfig, emojiConfig, null, xOffset, (int) (y + heightOffset * fontConfig.getFontScale()), 0, Integer.MAX_VALUE, Integer.MAX_VALUE, false, null, null, true);
             y += heightScaled;
         }
 
@@ -270,6 +270,7 @@ public class MessageCensorPanel extends ControlPanelBase
     {
         messageList.revalidateTable();
         chat.initMessageRollout();
+        chat.refreshCensorship();
         chat.repaint();
     }
 
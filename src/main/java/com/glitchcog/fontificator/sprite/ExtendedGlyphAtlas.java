@@ -0,0 +1,236 @@
+package com.glitchcog.fontificator.sprite;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Extended characters, the ones not in the sprite font, drawn with the regular system font instead. Laying out and
+ * rasterizing text every time the chat is painted is slow, so each extended character is rasterized once per color
+ * into a small image that is just copied onto the chat after that, and the width of each character is remembered.
+ * Everything is thrown away whenever the system font used for the extended characters changes.
+ *
+ * @author Matt Yanos
+ */
+public class ExtendedGlyphAtlas
+{
+    /**
+     * The most rasterized characters to keep before throwing away the least recently drawn ones
+     */
+    private static final int MAX_GLYPH_COUNT = 4096;
+
+    /**
+     * The number of codepoints in each page of widths
+     */
+    private static final int WIDTH_PAGE_SIZE = 256;
+
+    /**
+     * Marks a width that hasn't been measured yet
+     */
+    private static final int UNMEASURED = -1;
+
+    /**
+     * The font the widths were measured and the characters rasterized in
+     */
+    private Font font;
+
+    /**
+     * The rendering context the characters were rasterized for, which includes whether they are anti-aliased
+     */
+    private FontRenderContext renderContext;
+
+    /**
+     * The width of each character, split into pages of codepoints that are only allocated once a character on that page
+     * is measured
+     */
+    private int[][] widths;
+
+    /**
+     * The rasterized characters keyed off of the codepoint and the color, with the least recently drawn first
+     */
+    private Map<Long, Glyph> glyphs;
+
+    private long hitCount;
+
+    private long missCount;
+
+    public ExtendedGlyphAtlas()
+    {
+        this.widths = new int[(Character.MAX_CODE_POINT + 1) / WIDTH_PAGE_SIZE][];
+        this.glyphs = new LinkedHashMap<Long, Glyph>(64, 0.75f, true)
+        {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Glyph> eldest)
+            {
+                return size() > MAX_GLYPH_COUNT;
+            }
+        };
+    }
+
+    /**
+     * Set the font the extended characters are drawn in, throwing away all the widths and the rasterized characters if
+     * it is different from the one they were made for
+     *
+     * @param font
+     * @return whether the font changed
+     */
+    public synchronized boolean setFont(Font font)
+    {
+        if (font.equals(this.font))
+        {
+            return false;
+        }
+        this.font = font;
+        renderContext = null;
+        widths = new int[widths.length][];
+        glyphs.clear();
+        return true;
+    }
+
+    private void checkFont(FontMetrics fontMetrics)
+    {
+        setFont(fontMetrics.getFont());
+    }
+
+    /**
+     * Get the width of the character in the font of the specified font metrics
+     *
+     * @param fontMetrics
+     * @param codepoint
+     * @return width
+     */
+    public synchronized int getWidth(FontMetrics fontMetrics, int codepoint)
+    {
+        checkFont(fontMetrics);
+        final int pageIndex = codepoint / WIDTH_PAGE_SIZE;
+        if (pageIndex < 0 || pageIndex >= widths.length)
+        {
+            return fontMetrics.charWidth(codepoint);
+        }
+
+        int[] page = widths[pageIndex];
+        if (page == null)
+        {
+            page = new int[WIDTH_PAGE_SIZE];
+            for (int i = 0; i < page.length; i++)
+            {
+                page[i] = UNMEASURED;
+            }
+            widths[pageIndex] = page;
+        }
+
+        final int offset = codepoint % WIDTH_PAGE_SIZE;
+        if (page[offset] == UNMEASURED)
+        {
+            page[offset] = fontMetrics.charWidth(codepoint);
+        }
+        return page[offset];
+    }
+
+    /**
+     * Draw the character with its baseline at the specified y, rasterizing it first if it hasn't been drawn in this
+     * color yet
+     *
+     * @param g2d
+     * @param fontMetrics
+     * @param codepoint
+     * @param x
+     * @param baselineY
+     * @param color
+     */
+    public synchronized void draw(Graphics2D g2d, FontMetrics fontMetrics, int codepoint, int x, int baselineY, Color color)
+    {
+        checkFont(fontMetrics);
+        if (!g2d.getFontRenderContext().equals(renderContext))
+        {
+            renderContext = g2d.getFontRenderContext();
+            glyphs.clear();
+        }
+
+        final Long key = ((long) codepoint << 32) | (color.getRGB() & 0xFFFFFFFFL);
+        Glyph glyph = glyphs.get(key);
+        if (glyph == null)
+        {
+            missCount++;
+            glyph = rasterize(g2d, codepoint, color);
+            glyphs.put(key, glyph);
+        }
+        else
+        {
+            hitCount++;
+        }
+
+        if (glyph.image != null)
+        {
+            g2d.drawImage(glyph.image, x + glyph.offsetX, baselineY + glyph.offsetY, null);
+        }
+    }
+
+    /**
+     * Rasterize the character into an image just big enough to hold it, using the same rendering hints it would be
+     * drawn with directly
+     *
+     * @param g2d
+     * @param codepoint
+     * @param color
+     * @return glyph
+     */
+    private Glyph rasterize(Graphics2D g2d, int codepoint, Color color)
+    {
+        GlyphVector vector = font.createGlyphVector(renderContext, new String(Character.toChars(codepoint)));
+        Rectangle bounds = vector.getPixelBounds(renderContext, 0.0f, 0.0f);
+        if (bounds.isEmpty())
+        {
+            return new Glyph(null, 0, 0);
+        }
+
+        // A pixel of padding on each side for anti-aliasing
+        bounds.grow(1, 1);
+        BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D imageGraphics = image.createGraphics();
+        imageGraphics.setRenderingHints(g2d.getRenderingHints());
+        imageGraphics.setColor(color);
+        imageGraphics.drawGlyphVector(vector, -bounds.x, -bounds.y);
+        imageGraphics.dispose();
+
+        return new Glyph(image, bounds.x, bounds.y);
+    }
+
+    /**
+     * Get a summary of how often the rasterized characters could be reused, to be displayed for debugging
+     *
+     * @return statistics
+     */
+    public synchronized String getStatistics()
+    {
+        return "Extended: " + glyphs.size() + " glyphs, " + hitCount + " hits, " + missCount + " misses";
+    }
+
+    /**
+     * A rasterized character, and where its image goes relative to the start of its baseline
+     */
+    private static class Glyph
+    {
+        private final BufferedImage image;
+
+        private final int offsetX;
+
+        private final int offsetY;
+
+        public Glyph(BufferedImage image, int offsetX, int offsetY)
+        {
+            this.image = image;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+        }
+    }
+}
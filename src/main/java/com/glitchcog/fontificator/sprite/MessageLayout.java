@@ -0,0 +1,245 @@
+package com.glitchcog.fontificator.sprite;
+
+import java.awt.Dimension;
+
+/**
+ * The word wrapped layout of a single message: the position of every character relative to where the message starts
+ * drawing, and which line each character falls on. It is calculated by the SpriteFont and kept on the Message so the
+ * wrapping doesn't need to be redone every time the chat is painted. It is only valid for the text, line wrap length,
+ * and font layout version it was calculated with.
+ *
+ * @author Matt Yanos
+ */
+public class MessageLayout
+{
+    /**
+     * The font that calculated this layout
+     */
+    private final SpriteFont font;
+
+    /**
+     * The text that was laid out
+     */
+    private final SpriteText text;
+
+    /**
+     * How long the text was allowed to go to the right before going to a new line
+     */
+    private final int lineWrapLength;
+
+    /**
+     * The layout version of the font when this layout was calculated
+     */
+    private final int version;
+
+    /**
+     * Whether a single character is wider than the line wrap length, meaning the message can't be drawn at all
+     */
+    private final boolean unwrappable;
+
+    /**
+     * The x offset of each character from the left edge of the message
+     */
+    private final int[] glyphX;
+
+    /**
+     * The width of each character, including the spacing between characters
+     */
+    private final int[] glyphWidth;
+
+    /**
+     * The y offset of each character from the top of the message
+     */
+    private final int[] glyphY;
+
+    /**
+     * The line index of each character, counting up from zero
+     */
+    private final int[] glyphLine;
+
+    /**
+     * Whether each character is actually drawn, as opposed to whitespace that only takes up room
+     */
+    private final boolean[] glyphDrawn;
+
+    /**
+     * The number of lines the fully drawn message takes up
+     */
+    private final int lineCount;
+
+    /**
+     * The distance in pixels from the top of one line to the top of the next, scaled
+     */
+    private final int lineHeight;
+
+    /**
+     * The extra distance after the message when it isn't the last message
+     */
+    private final int messageSpacing;
+
+    /**
+     * The width of the widest line, not including the last one
+     */
+    private final int maxWidth;
+
+    public MessageLayout(SpriteFont font, SpriteText text, int lineWrapLength, int version, int[] glyphX, int[] glyphWidth, int[] glyphY, int[] glyphLine, boolean[] glyphDrawn, int lineCount, int lineHeight, int messageSpacing, int maxWidth)
+    {
+        this.font = font;
+        this.text = text;
+        this.lineWrapLength = lineWrapLength;
+        this.version = version;
+        this.unwrappable = false;
+        this.glyphX = glyphX;
+        this.glyphWidth = glyphWidth;
+        this.glyphY = glyphY;
+        this.glyphLine = glyphLine;
+        this.glyphDrawn = glyphDrawn;
+        this.lineCount = lineCount;
+        this.lineHeight = lineHeight;
+        this.messageSpacing = messageSpacing;
+        this.maxWidth = maxWidth;
+    }
+
+    /**
+     * Construct the layout of a message that can't be drawn because one of its characters is wider than the line wrap
+     * length
+     *
+     * @param font
+     * @param text
+     * @param lineWrapLength
+     * @param version
+     */
+    public MessageLayout(SpriteFont font, SpriteText text, int lineWrapLength, int version)
+    {
+        this.font = font;
+        this.text = text;
+        this.lineWrapLength = lineWrapLength;
+        this.version = version;
+        this.unwrappable = true;
+        this.glyphX = new int[0];
+        this.glyphWidth = new int[0];
+        this.glyphY = new int[0];
+        this.glyphLine = new int[0];
+        this.glyphDrawn = new boolean[0];
+        this.lineCount = 0;
+        this.lineHeight = 0;
+        this.messageSpacing = 0;
+        this.maxWidth = 0;
+    }
+
+    /**
+     * Get whether this layout can be reused for the specified text and line wrap length
+     *
+     * @param font
+     * @param text
+     * @param lineWrapLength
+     * @param version
+     * @return valid
+     */
+    public boolean isValid(SpriteFont font, SpriteText text, int lineWrapLength, int version)
+    {
+        return this.font == font && this.text == text && this.lineWrapLength == lineWrapLength && this.version == version;
+    }
+
+    public boolean isUnwrappable()
+    {
+        return unwrappable;
+    }
+
+    public int getLength()
+    {
+        return glyphX.length;
+    }
+
+    public int getGlyphX(int index)
+    {
+        return glyphX[index];
+    }
+
+    public int getGlyphWidth(int index)
+    {
+        return glyphWidth[index];
+    }
+
+    public int getGlyphY(int index)
+    {
+        return glyphY[index];
+    }
+
+    public int getGlyphLine(int index)
+    {
+        return glyphLine[index];
+    }
+
+    public boolean isGlyphDrawn(int index)
+    {
+        return glyphDrawn[index];
+    }
+
+    public int getLineCount()
+    {
+        return lineCount;
+    }
+
+    public int getLineHeight()
+    {
+        return lineHeight;
+    }
+
+    /**
+     * Get the number of characters that are drawn for the specified draw cursor
+     *
+     * @param drawCursor
+     * @return visible character count
+     */
+    public int getVisibleCount(float drawCursor)
+    {
+        final int length = getLength();
+        return drawCursor >= length ? length : (int) Math.ceil(drawCursor);
+    }
+
+    /**
+     * Get the number of lines taken up by the message with only the characters before the draw cursor drawn
+     *
+     * @param drawCursor
+     * @return line count
+     */
+    public int getLineCount(float drawCursor)
+    {
+        if (unwrappable)
+        {
+            return 0;
+        }
+        final int visible = getVisibleCount(drawCursor);
+        return 1 + (visible == 0 ? 0 : glyphLine[visible - 1]);
+    }
+
+    /**
+     * Get the pixel height of the message with only the characters before the draw cursor drawn
+     *
+     * @param drawCursor
+     * @param lastMessage
+     *            Whether this message is the last message, in which case no message spacing is added after it
+     * @return height
+     */
+    public int getHeight(float drawCursor, boolean lastMessage)
+    {
+        if (unwrappable)
+        {
+            return 0;
+        }
+        return getLineCount(drawCursor) * lineHeight + (lastMessage ? 0 : messageSpacing);
+    }
+
+    /**
+     * Get the size of the bounding box of the message with only the characters before the draw cursor drawn
+     *
+     * @param drawCursor
+     * @param lastMessage
+     * @return dimension
+     */
+    public Dimension getDimension(float drawCursor, boolean lastMessage)
+    {
+        return unwrappable ? new Dimension() : new Dimension(maxWidth, getHeight(drawCursor, lastMessage));
+    }
+}
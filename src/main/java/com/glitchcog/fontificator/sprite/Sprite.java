@@ -1,19 +1,14 @@
 package com.glitchcog.fontificator.sprite;
 
+import java.awt.AlphaComposite;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.awt.image.BufferedImageOp;
-import java.awt.image.ColorModel;
-import java.awt.image.LookupOp;
-import java.awt.image.ShortLookupTable;
-import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
-import java.util.HashMap;
-import java.util.Map;
 
 import javax.imageio.ImageIO;
 
@@ -22,7 +17,11 @@ import org.apache.log4j.Logger;
 import com.glitchcog.fontificator.config.ConfigFont;
 
 /**
- * A sprite that has a grid containing different frames to be displayed.
+ * A sprite that has a grid containing different frames to be displayed. The image is not kept as loaded; its pixels are
+ * repacked into the most compact form that can still reproduce them. Most font images are white on transparent, so
+ * each pixel is just a byte of alpha, and the rest are either grayscale, needing a second byte for the shade, or full
+ * color. Drawing tints only the part of the image being drawn, and the tinted pieces are kept in the sprite's own
+ * TintCache.
  * 
  * @author Matt Yanos
  */
@@ -30,9 +29,31 @@ public class Sprite
 {
     private static final Logger logger = Logger.getLogger(Sprite.class);
 
-    private BufferedImage img;
+    /**
+     * The pixel width of the whole image
+     */
+    private int imageWidth;
+
+    /**
+     * The pixel height of the whole image
+     */
+    private int imageHeight;
 
-    private Map<Color, BufferedImage> coloredImgs;
+    /**
+     * The alpha of each pixel of the image, row by row, or null if the image is in full color
+     */
+    private byte[] alphas;
+
+    /**
+     * The shade of gray of each pixel of the image, row by row, or null if the image is white wherever it isn't
+     * transparent, or is in full color
+     */
+    private byte[] shades;
+
+    /**
+     * The ARGB of each pixel of the image, row by row, only for an image that is in full color
+     */
+    private int[] colors;
 
     /**
      * The number of frames that make up the width of the image grid
@@ -54,9 +75,10 @@ public class Sprite
      */
     protected int pixelHeight;
 
-    private ShortLookupTable swapTable;
-
-    private BufferedImageOp swapOp;
+    /**
+     * The parts of the image that have been drawn, already tinted and scaled
+     */
+    private final TintCache tints = new TintCache();
 
     /**
      * An empty sprite to use if an image file won't load
@@ -67,9 +89,7 @@ public class Sprite
         this.gridWidth = 8;
         this.pixelWidth = 8;
         this.pixelHeight = 8;
-        img = new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_ARGB);
-        coloredImgs = new HashMap<Color, BufferedImage>();
-        setupSwap();
+        setImage(new BufferedImage(pixelWidth, pixelHeight, BufferedImage.TYPE_INT_ARGB));
     }
 
     /**
@@ -88,8 +108,6 @@ public class Sprite
         this(filename);
         logger.trace("Sprite grid specified: (" + gridWidth + "x" + gridHeight + ")");
         setGridDimensions(gridWidth, gridHeight);
-        setupSwap();
-        addToColorCache(Color.WHITE);
     }
 
     /**
@@ -102,30 +120,13 @@ public class Sprite
     {
         logger.trace("Loading sprite from " + fontSpriteFilename);
 
-        coloredImgs = new HashMap<Color, BufferedImage>();
-
         setImage(fontSpriteFilename);
-
-        setupSwap();
-    }
-
-    private void setupSwap()
-    {
-        short[][] lookupArray = new short[4][256];
-        for (int i = 0; i < lookupArray.length; i++)
-        {
-            for (short c = 0; c < lookupArray[i].length; c++)
-            {
-                lookupArray[i][c] = c;
-            }
-        }
-        swapTable = new ShortLookupTable(0, lookupArray);
-        swapOp = new LookupOp(swapTable, null);
     }
 
     private boolean setImage(String filename) throws IOException
     {
         logger.trace("Setting image for " + filename);
+        BufferedImage img;
         if (filename.startsWith(ConfigFont.INTERNAL_FILE_PREFIX))
         {
             final String classPathUrlStr = filename.substring(ConfigFont.INTERNAL_FILE_PREFIX.length());
@@ -156,12 +157,90 @@ public class Sprite
             logger.error("Unable to load image " + filename);
             return false;
         }
+        setImage(img);
         return true;
     }
 
-    public BufferedImage getImage()
+    /**
+     * Repack the pixels of the image into the smallest form that holds everything needed to tint them
+     * 
+     * @param img
+     */
+    private void setImage(BufferedImage img)
+    {
+        imageWidth = img.getWidth();
+        imageHeight = img.getHeight();
+        int[] pixels = img.getRGB(0, 0, imageWidth, imageHeight, null, 0, imageWidth);
+
+        // Transparent pixels don't count, because whatever color they are tinted they still don't show up
+        boolean white = true;
+        boolean gray = true;
+        for (int i = 0; i < pixels.length && gray; i++)
+        {
+            if ((pixels[i] >>> 24) != 0)
+            {
+                final int r = (pixels[i] >> 16) & 0xFF;
+                final int g = (pixels[i] >> 8) & 0xFF;
+                final int b = pixels[i] & 0xFF;
+                white &= r == 0xFF && g == 0xFF && b == 0xFF;
+                gray &= r == g && g == b;
+            }
+        }
+
+        alphas = null;
+        shades = null;
+        colors = null;
+        if (gray)
+        {
+            alphas = new byte[pixels.length];
+            shades = white ? null : new byte[pixels.length];
+            for (int i = 0; i < pixels.length; i++)
+            {
+                alphas[i] = (byte) (pixels[i] >>> 24);
+                if (shades != null)
+                {
+                    shades[i] = (byte) pixels[i];
+                }
+            }
+        }
+        else
+        {
+            colors = pixels;
+        }
+        logger.trace("Sprite image packed as " + (colors != null ? "color" : (shades != null ? "grayscale" : "alpha mask")));
+    }
+
+    /**
+     * The pixel width of the whole image
+     * 
+     * @return imageWidth
+     */
+    public int getImageWidth()
+    {
+        return imageWidth;
+    }
+
+    /**
+     * The pixel height of the whole image
+     * 
+     * @return imageHeight
+     */
+    public int getImageHeight()
+    {
+        return imageHeight;
+    }
+
+    /**
+     * Get the alpha of the specified pixel of the image
+     * 
+     * @param x
+     * @param y
+     * @return alpha, from 0 to 255
+     */
+    public int getAlpha(int x, int y)
     {
-        return img;
+        final int i = x + y * imageWidth;
+        return colors == null ? (alphas[i] & 0xFF) : (colors[i] >>> 24);
     }
 
     public void setGridDimensions(ConfigFont config)
@@ -189,7 +268,7 @@ public class Sprite
             gridWidth = 1;
         }
         this.gridWidth = gridWidth;
-        this.pixelWidth = img.getWidth(null) / gridWidth;
+        this.pixelWidth = imageWidth / gridWidth;
     }
 
     /**
@@ -206,7 +285,7 @@ public class Sprite
             gridHeight = 1;
         }
         this.gridHeight = gridHeight;
-        this.pixelHeight = img.getHeight(null) / gridHeight;
+        this.pixelHeight = imageHeight / gridHeight;
     }
 
     /**
@@ -249,27 +328,154 @@ public class Sprite
         return (int) (pixelHeight * scale);
     }
 
-    private static BufferedImage copyImage(BufferedImage bi)
+    /**
+     * Tint the part of the image bounded by the specified source box. Each component of each pixel is multiplied by the
+     * corresponding component of the color, and the alpha is kept as is. Parts of the box off the edge of the image are
+     * left transparent.
+     * 
+     * @param srcX
+     * @param srcY
+     * @param srcWidth
+     * @param srcHeight
+     * @param color
+     * @return tinted tile
+     */
+    private BufferedImage createTintedTile(int srcX, int srcY, int srcWidth, int srcHeight, Color color)
     {
-        ColorModel cm = bi.getColorModel();
-        WritableRaster raster = bi.copyData(null);
-        return new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null);
+        final int[] redTable = getTintTable(color.getRed());
+        final int[] greenTable = getTintTable(color.getGreen());
+        final int[] blueTable = getTintTable(color.getBlue());
+        final int solidRgb = (redTable[0xFF] << 16) | (greenTable[0xFF] << 8) | blueTable[0xFF];
+
+        int[] tilePixels = new int[srcWidth * srcHeight];
+        for (int y = Math.max(0, -srcY); y < srcHeight && srcY + y < imageHeight; y++)
+        {
+            for (int x = Math.max(0, -srcX); x < srcWidth && srcX + x < imageWidth; x++)
+            {
+                final int i = (srcX + x) + (srcY + y) * imageWidth;
+                int pixel;
+                if (colors != null)
+                {
+                    final int argb = colors[i];
+                    pixel = (argb & 0xFF000000) | (redTable[(argb >> 16) & 0xFF] << 16) | (greenTable[(argb >> 8) & 0xFF] << 8) | blueTable[argb & 0xFF];
+                }
+                else if (shades != null)
+                {
+                    final int shade = shades[i] & 0xFF;
+                    pixel = (alphas[i] << 24) | (redTable[shade] << 16) | (greenTable[shade] << 8) | blueTable[shade];
+                }
+                else
+                {
+                    pixel = (alphas[i] << 24) | solidRgb;
+                }
+                tilePixels[x + y * srcWidth] = pixel;
+            }
+        }
+
+        BufferedImage tile = new BufferedImage(srcWidth, srcHeight, BufferedImage.TYPE_INT_ARGB);
+        tile.setRGB(0, 0, srcWidth, srcHeight, tilePixels, 0, srcWidth);
+        return tile;
     }
 
-    private BufferedImage addToColorCache(Color drawColor)
+    /**
+     * Get the table of what each value of a color component becomes when tinted by the specified value
+     * 
+     * @param tint
+     * @return table
+     */
+    private static int[] getTintTable(int tint)
     {
-        for (short i = 0; i < 256; i++)
+        int[] table = new int[256];
+        for (int i = 0; i < table.length; i++)
         {
-            swapTable.getTable()[0][i] = (short) ((i / 255.0f) * drawColor.getRed());
-            swapTable.getTable()[1][i] = (short) ((i / 255.0f) * drawColor.getGreen());
-            swapTable.getTable()[2][i] = (short) ((i / 255.0f) * drawColor.getBlue());
+            table[i] = (int) ((i / 255.0f) * tint);
         }
-        BufferedImage coloredImg = copyImage(img);
-        coloredImg = swapOp.filter(img, coloredImg);
+        return table;
+    }
+
+    /**
+     * Scale the tile up or down to the specified size. When the size is a whole multiple of the tile's size each pixel
+     * is just repeated, and otherwise it is scaled using nearest neighbor, so either way the pixels stay sharp.
+     * 
+     * @param tile
+     * @param drawWidth
+     * @param drawHeight
+     * @return scaled tile
+     */
+    private static BufferedImage createScaledTile(BufferedImage tile, int drawWidth, int drawHeight)
+    {
+        final int tileWidth = tile.getWidth();
+        final int tileHeight = tile.getHeight();
+        BufferedImage scaled = new BufferedImage(drawWidth, drawHeight, BufferedImage.TYPE_INT_ARGB);
 
-        coloredImgs.put(drawColor, coloredImg);
+        if (drawWidth % tileWidth == 0 && drawHeight % tileHeight == 0)
+        {
+            final int scaleX = drawWidth / tileWidth;
+            final int scaleY = drawHeight / tileHeight;
+            int[] tilePixels = tile.getRGB(0, 0, tileWidth, tileHeight, null, 0, tileWidth);
+            int[] scaledPixels = new int[drawWidth * drawHeight];
+            for (int y = 0; y < drawHeight; y++)
+            {
+                final int tileRow = (y / scaleY) * tileWidth;
+                final int scaledRow = y * drawWidth;
+                for (int x = 0; x < drawWidth; x++)
+                {
+                    scaledPixels[scaledRow + x] = tilePixels[tileRow + x / scaleX];
+                }
+            }
+            scaled.setRGB(0, 0, drawWidth, drawHeight, scaledPixels, 0, drawWidth);
+        }
+        else
+        {
+            Graphics2D scaledGraphics = scaled.createGraphics();
+            scaledGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+            scaledGraphics.setComposite(AlphaComposite.Src);
+            scaledGraphics.drawImage(tile, 0, 0, drawWidth, drawHeight, 0, 0, tileWidth, tileHeight, null);
+            scaledGraphics.dispose();
+        }
 
-        return coloredImg;
+        return scaled;
+    }
+
+    /**
+     * Get the part of the image bounded by the specified source box tinted the specified color and scaled to the
+     * specified size, from the tint cache if it's still there
+     * 
+     * @param srcX
+     * @param srcY
+     * @param srcWidth
+     * @param srcHeight
+     * @param color
+     * @param drawWidth
+     * @param drawHeight
+     * @return tinted tile
+     */
+    private BufferedImage getTintedTile(int srcX, int srcY, int srcWidth, int srcHeight, Color color, int drawWidth, int drawHeight)
+    {
+        BufferedImage tile = tints.get(srcX, srcY, srcWidth, srcHeight, color, drawWidth, drawHeight);
+        if (tile == null)
+        {
+            if (drawWidth == srcWidth && drawHeight == srcHeight)
+            {
+                tile = createTintedTile(srcX, srcY, srcWidth, srcHeight, color);
+            }
+            else
+            {
+                tile = createScaledTile(getTintedTile(srcX, srcY, srcWidth, srcHeight, color, srcWidth, srcHeight), drawWidth, drawHeight);
+            }
+            tints.put(srcX, srcY, srcWidth, srcHeight, color, drawWidth, drawHeight, tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Get a summary of how the cache of tinted tiles is doing, to be displayed for debugging
+     * 
+     * @return statistics
+     */
+    public String getTintStatistics()
+    {
+        return tints.getStatistics();
     }
 
     public void draw(Graphics2D g2d, int x, int y, int frame, float scale, Color color)
@@ -277,17 +483,7 @@ public class Sprite
         int sourceX = (frame % gridWidth) * pixelWidth;
         int sourceY = (frame / gridWidth) * pixelHeight;
 
-        BufferedImage drawImg = coloredImgs.get(color);
-        if (drawImg == null)
-        {
-            drawImg = addToColorCache(color);
-            coloredImgs.put(color, drawImg);
-        }
-        g2d.drawImage(drawImg, x, y, x + (int) (pixelWidth * scale), y + (int) (pixelHeight * scale), sourceX, sourceY, sourceX + pixelWidth, sourceY + pixelHeight, null);
-
-        // Crops the image before anti-aliasing is applied, so pixels on the edges of cropping lines don't bleed over, but it's slow!
-        // final BufferedImage bi = drawImg.getSubimage(sourceX, sourceY, pixelWidth, pixelHeight);
-        // g2d.drawImage(bi, x, y, (int) (pixelWidth * scale), (int) (pixelHeight * scale), null);
+        draw(g2d, x, y, pixelWidth, pixelHeight, sourceX, sourceY, pixelWidth, pixelHeight, scale, color);
     }
 
     /**
@@ -304,17 +500,36 @@ public class Sprite
 
     public void draw(Graphics2D g2d, int x, int y, int w, int h, Rectangle source, float scale, Color color)
     {
-        BufferedImage drawImg = coloredImgs.get(color);
-        if (drawImg == null)
+        draw(g2d, x, y, w, h, source.x, source.y, source.width, source.height, scale, color);
+    }
+
+    /**
+     * Draw the part of the sprite image bounded by the specified source box, without needing a Rectangle for it. Only
+     * that part of the image is tinted, so nothing around it can bleed into the edges when it is drawn anti-aliased. It
+     * is tinted and scaled once, and after that each draw of it is an unscaled copy.
+     * 
+     * @param g2d
+     * @param x
+     * @param y
+     * @param w
+     * @param h
+     * @param srcX
+     * @param srcY
+     * @param srcWidth
+     * @param srcHeight
+     * @param scale
+     * @param color
+     */
+    public void draw(Graphics2D g2d, int x, int y, int w, int h, int srcX, int srcY, int srcWidth, int srcHeight, float scale, Color color)
+    {
+        final int drawWidth = (int) (w * scale);
+        final int drawHeight = (int) (h * scale);
+        if (srcWidth <= 0 || srcHeight <= 0 || drawWidth <= 0 || drawHeight <= 0)
         {
-            drawImg = addToColorCache(color);
-            coloredImgs.put(color, drawImg);
+            return;
         }
-        g2d.drawImage(drawImg, x, y, x + (int) (w * scale), y + (int) (h * scale), source.x, source.y, source.x + source.width, source.y + source.height, null);
-
-        // Crops the image before anti-aliasing is applied, so pixels on the edges of cropping lines don't bleed over, but it's slow!
-        // final BufferedImage bi = drawImg.getSubimage(source.x, source.y, source.width, source.height);
-        // g2d.drawImage(bi, x, y, (int) (w * scale), (int) (h * scale), null);
+        BufferedImage tile = getTintedTile(srcX, srcY, srcWidth, srcHeight, color, drawWidth, drawHeight);
+        g2d.drawImage(tile, x, y, null);
     }
 
 }
@@ -1,55 +1,84 @@
 package com.glitchcog.fontificator.sprite;
 
 import java.awt.Color;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.glitchcog.fontificator.emoji.LazyLoadEmoji;
 
 /**
  * Replacement for char that can also represent an emoji or a badge. One or the other member variable is to be set.
+ * Character keys are immutable and shared, so they are gotten with valueOf rather than constructed.
  * 
  * @author Matt Yanos
  */
 public class SpriteCharacterKey
 {
+    /**
+     * The shared keys for the ASCII range, which covers nearly every character of nearly every message
+     */
+    private static final SpriteCharacterKey[] ASCII_KEYS = new SpriteCharacterKey[128];
+
+    /**
+     * The shared keys for everything outside the ASCII range, created the first time each codepoint is used
+     */
+    private static final ConcurrentMap<Integer, SpriteCharacterKey> EXTENDED_KEYS = new ConcurrentHashMap<Integer, SpriteCharacterKey>();
+
+    static
+    {
+        for (int c = 0; c < ASCII_KEYS.length; c++)
+        {
+            ASCII_KEYS[c] = new SpriteCharacterKey(c, null, false, null);
+        }
+    }
+
     /**
      * The character this represents
      */
-    private int codepoint;
+    private final int codepoint;
 
     /**
      * Whether the character falls outside of the inclusive ASCII range 32-127
      */
-    private boolean extended;
+    private final boolean extended;
 
     /**
      * The emoji this character represents
      */
-    private LazyLoadEmoji emoji;
+    private final LazyLoadEmoji emoji;
 
     /**
      * Background color override for emoji, for handling variable FFZ badge colors (bot is default gray, but changes to
      * green if the bot is also a moderator)
      */
-    private Color emojiBgColorOverride;
+    private final Color emojiBgColorOverride;
 
     /**
      * Whether the emoji set is a badge image
      */
-    private boolean badge;
+    private final boolean badge;
 
     /**
-     * Construct as a character
+     * Get the shared key for a character
      * 
-     * @param character
+     * @param codepoint
+     * @return key
      */
-    public SpriteCharacterKey(char character)
+    public static SpriteCharacterKey valueOf(int codepoint)
     {
-        this(character, null, false);
-    }
+        if (codepoint >= 0 && codepoint < ASCII_KEYS.length)
+        {
+            return ASCII_KEYS[codepoint];
+        }
 
-    public SpriteCharacterKey(int codepoint)
-    {
-        this(codepoint, null, false);
+        SpriteCharacterKey key = EXTENDED_KEYS.get(codepoint);
+        if (key == null)
+        {
+            key = new SpriteCharacterKey(codepoint, null, false, null);
+            SpriteCharacterKey existing = EXTENDED_KEYS.putIfAbsent(codepoint, key);
+            key = existing == null ? key : existing;
+        }
+        return key;
     }
 
     /**
@@ -59,7 +88,19 @@ public class SpriteCharacterKey
      */
     public SpriteCharacterKey(LazyLoadEmoji emoji, boolean badge)
     {
-        this(127, emoji, badge);
+        this(emoji, badge, null);
+    }
+
+    /**
+     * Construct as an emoji with a background color that overrides the one on the emoji
+     * 
+     * @param emoji
+     * @param badge
+     * @param emojiBgColorOverride
+     */
+    public SpriteCharacterKey(LazyLoadEmoji emoji, boolean badge, Color emojiBgColorOverride)
+    {
+        this(127, emoji, badge, emojiBgColorOverride);
     }
 
     /**
@@ -69,14 +110,27 @@ public class SpriteCharacterKey
      * @param emoji
      * @param badge
      *            Only used for emoji
+     * @param emojiBgColorOverride
+     *            Only used for emoji
      */
-    private SpriteCharacterKey(int codepoint, LazyLoadEmoji emoji, boolean badge)
+    private SpriteCharacterKey(int codepoint, LazyLoadEmoji emoji, boolean badge, Color emojiBgColorOverride)
     {
         this.codepoint = codepoint;
-        /* not-great: Take code point and toss surrogate pair, if present, to check if in ascii set */
-        this.extended = !SpriteFont.NORMAL_ASCII_KEY.contains(Character.toString(Character.toChars(this.codepoint)[0]));
+        this.extended = isExtended(codepoint);
         this.emoji = emoji;
         this.badge = badge;
+        this.emojiBgColorOverride = emojiBgColorOverride;
+    }
+
+    /**
+     * Whether the codepoint falls outside of the inclusive ASCII range 32-127
+     * 
+     * @param codepoint
+     * @return extended
+     */
+    public static boolean isExtended(int codepoint)
+    {
+        return codepoint < ' ' || codepoint > 127;
     }
 
     /**
@@ -166,9 +220,4 @@ public class SpriteCharacterKey
         return emoji == null ? null : emoji.getBgColor();
     }
 
-    public void setEmojiBgColorOverride(Color emojiColorOverride)
-    {
-        this.emojiBgColorOverride = emojiColorOverride;
-    }
-
 }
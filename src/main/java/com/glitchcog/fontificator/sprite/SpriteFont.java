@@ -7,18 +7,17 @@ import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.Rectangle;
 import java.awt.image.ImageObserver;
-import java.util.HashMap;
-import java.util.Map;
 
 import org.apache.log4j.Logger;
 
 import com.glitchcog.fontificator.bot.Message;
 import com.glitchcog.fontificator.bot.MessageType;
-import com.glitchcog.fontificator.config.ConfigColor;
 import com.glitchcog.fontificator.config.ConfigEmoji;
 import com.glitchcog.fontificator.config.ConfigFont;
 import com.glitchcog.fontificator.config.ConfigMessage;
+import com.glitchcog.fontificator.config.EmojiLoadingDisplayStragegy;
 import com.glitchcog.fontificator.config.FontType;
+import com.glitchcog.fontificator.config.RenderSnapshot;
 import com.glitchcog.fontificator.emoji.EmojiManager;
 import com.glitchcog.fontificator.emoji.LazyLoadEmoji;
 
@@ -40,7 +39,31 @@ public class SpriteFont
 
     protected SpriteCache sprites;
 
-    protected Map<Integer, Rectangle> characterBounds;
+    /**
+     * The left edge of each character's bounding box in the sprite font image, indexed by codepoint
+     */
+    protected int[] glyphX;
+
+    /**
+     * The top edge of each character's bounding box in the sprite font image, indexed by codepoint
+     */
+    protected int[] glyphY;
+
+    /**
+     * The width of each character's bounding box in the sprite font image, indexed by codepoint. Codepoints that aren't
+     * in the character key are given the bounds of the unknown character.
+     */
+    protected int[] glyphWidth;
+
+    /**
+     * The height of each character's bounding box in the sprite font image, indexed by codepoint
+     */
+    protected int[] glyphHeight;
+
+    /**
+     * Whether each codepoint is in the character key, as opposed to being filled in with the unknown character
+     */
+    protected boolean[] glyphValid;
 
     /**
      * Characters that can be line breaks for wrapping to the next line
@@ -59,32 +82,71 @@ public class SpriteFont
 
     protected ConfigFont config;
 
+    /**
+     * Incremented whenever a change to the configuration might move characters around, so the layouts stored on
+     * messages know they need to be recalculated
+     */
+    private int layoutVersion;
+
+    /**
+     * The extended characters rasterized in the system font, for when they are enabled
+     */
+    private ExtendedGlyphAtlas extendedGlyphs;
+
+    /**
+     * The snapshot of the configuration that messages are measured and drawn with, set before each time the chat is
+     * drawn
+     */
+    private RenderSnapshot snapshot;
+
+    /**
+     * The font configuration generation of the snapshot the layout version was last checked against, which is what the
+     * layouts since then were calculated with
+     */
+    private long layoutFontGeneration;
+
+    /**
+     * The emoji display strategy the last time the layout version was checked, because it changes the size of emoji
+     * that aren't loaded yet
+     */
+    private EmojiLoadingDisplayStragegy layoutDisplayStrategy;
+
+    /**
+     * Whether emoji animation was enabled the last time the layout version was checked, because the animated and still
+     * images can be different sizes
+     */
+    private boolean layoutAnimationEnabled;
+
     public SpriteFont(ConfigFont config)
     {
         logger.trace("Creating sprite font using config font filename " + (config == null ? "null" : config.getFontFilename()));
         this.config = config;
-        this.characterBounds = new HashMap<Integer, Rectangle>();
+        this.glyphX = new int[0];
+        this.glyphY = new int[0];
+        this.glyphWidth = new int[0];
+        this.glyphHeight = new int[0];
+        this.glyphValid = new boolean[0];
         this.sprites = new SpriteCache(config);
+        this.extendedGlyphs = new ExtendedGlyphAtlas();
     }
 
     /**
      * Get the dimensions of an emoji image
      * 
      * @param img
-     * @param emojiConfig
      * @return
      */
-    private int[] getEmojiDimensions(SpriteCharacterKey c, ConfigEmoji emojiConfig)
+    private int[] getEmojiDimensions(SpriteCharacterKey c)
     {
         LazyLoadEmoji emoji = c.getEmoji();
-        Image img = emoji.getImage(emojiConfig.isAnimationEnabled());
+        Image img = emoji.getImage(snapshot.isAnimationEnabled());
 
         int iw;
         int ih;
 
         if (img == null)
         {
-            switch (emojiConfig.getDisplayStrategy())
+            switch (snapshot.getDisplayStrategy())
             {
             case SPACE:
             case BOX_FILL:
@@ -96,7 +158,7 @@ public class SpriteFont
                 // Do not use the emoji scaling below because it's a character, not an emoji
                 // We can pass a null in for the FontMetrics, because we know the unknown character falls within the
                 // non-extended range
-                return new int[] { getCharacterWidth(null, new SpriteCharacterKey(config.getUnknownChar()), emojiConfig), 1 };
+                return new int[] { (int) ((getGlyphWidth(snapshot.getUnknownChar()) + snapshot.getCharSpacing()) * snapshot.getFontScale()), 1 };
             case NOTHING:
             default:
                 iw = 0;
@@ -113,8 +175,8 @@ public class SpriteFont
         float h;
         float w;
 
-        float eScale = emoji.getType().isBadge() ? (emojiConfig.getBadgeScale() / 100.0f) : (emojiConfig.getEmojiScale() / 100.0f);
-        if ((emoji.getType().isBadge() && emojiConfig.isBadgeScaleToLine()) || (!emoji.getType().isBadge() && emojiConfig.isEmojiScaleToLine()))
+        float eScale = emoji.getType().isBadge() ? (snapshot.getBadgeScale() / 100.0f) : (snapshot.getEmojiScale() / 100.0f);
+        if ((emoji.getType().isBadge() && snapshot.isBadgeScaleToLine()) || (!emoji.getType().isBadge() && snapshot.isEmojiScaleToLine()))
         {
             final float emojiScaleRatio = eScale * getLineHeightScaled() / (float) ih;
             h = ih * emojiScaleRatio;
@@ -135,51 +197,74 @@ public class SpriteFont
      * @param c
      * @return character width
      */
-    public int getCharacterWidth(FontMetrics fontMetrics, SpriteCharacterKey c, ConfigEmoji emojiConfig)
+    public int getCharacterWidth(FontMetrics fontMetrics, SpriteCharacterKey c)
     {
-        if (c.isChar())
-        {
-            int baseWidth;
+        return c.isChar() ? getCharacterWidth(fontMetrics, c.getCodepoint()) : getEmojiWidth(c);
+    }
+
+    /**
+     * Return how wide the character or emoji at the specified index of the text is in pixels, scaled
+     * 
+     * @param fontMetrics
+     * @param text
+     * @param index
+     * @return character width
+     */
+    public int getCharacterWidth(FontMetrics fontMetrics, SpriteText text, int index)
+    {
+        return text.isChar(index) ? getCharacterWidth(fontMetrics, text.getCodepoint(index)) : getEmojiWidth(text.getKey(index));
+    }
+
+    private int getCharacterWidth(FontMetrics fontMetrics, int codepoint)
+    {
+        int baseWidth;
 
-            // Extended characters are enabled
-            if (c.isExtended())
+        // Extended characters are enabled
+        if (SpriteCharacterKey.isExtended(codepoint))
+        {
+            if (snapshot.isExtendedCharEnabled())
             {
-                if (config.isExtendedCharEnabled())
-                {
-                    // Return string width of extended char
-                    baseWidth = fontMetrics.charWidth(c.getCodepoint());
-                    // Don't include scale in this calculation, because it's already built into the font size
-                    return (int) (baseWidth + config.getCharSpacing() * config.getFontScale());
-                }
-                // The extended character should be replaced with the unknown character
-                else
-                {
-                    baseWidth = getCharacterBounds(config.getUnknownChar()).width;
-                }
+                // Return string width of extended char
+                baseWidth = extendedGlyphs.getWidth(fontMetrics, codepoint);
+                // Don't include scale in this calculation, because it's already built into the font size
+                return (int) (baseWidth + snapshot.getCharSpacing() * snapshot.getFontScale());
             }
-            // It's a normal character
+            // The extended character should be replaced with the unknown character
             else
             {
-                // Character
-                baseWidth = getCharacterBounds(c.getCodepoint()).width;
+                baseWidth = getGlyphWidth(snapshot.getUnknownChar());
             }
-            return (int) ((baseWidth + config.getCharSpacing()) * config.getFontScale());
         }
+        // It's a normal character
         else
         {
-            // Emoji
-            int[] eDim = getEmojiDimensions(c, emojiConfig);
-            final int charSpacing = (int) (config.getCharSpacing() * config.getFontScale());
-            final int extraSpacing = (c.getEmoji().getType().isBadge() ? Math.max(charSpacing, (int) (BADGE_MINIMUM_SPACING_PIXELS * config.getFontScale())) : charSpacing);
-            return eDim[0] + extraSpacing;
+            // Character
+            baseWidth = getGlyphWidth(codepoint);
         }
+        return (int) ((baseWidth + snapshot.getCharSpacing()) * snapshot.getFontScale());
+    }
 
+    private int getEmojiWidth(SpriteCharacterKey c)
+    {
+        int[] eDim = getEmojiDimensions(c);
+        final int charSpacing = (int) (snapshot.getCharSpacing() * snapshot.getFontScale());
+        final int extraSpacing = (c.getEmoji().getType().isBadge() ? Math.max(charSpacing, (int) (BADGE_MINIMUM_SPACING_PIXELS * snapshot.getFontScale())) : charSpacing);
+        return eDim[0] + extraSpacing;
     }
 
     public void calculateCharacterDimensions()
     {
-        // Start from scratch
-        characterBounds.clear();
+        // Start from scratch, with room for every codepoint in the character key
+        int glyphCount = Math.max(NORMAL_ASCII_KEY.charAt(NORMAL_ASCII_KEY.length() - 1) + 1, config.getUnknownChar() + 1);
+        for (int i = 0; i < config.getCharacterKey().length(); i++)
+        {
+            glyphCount = Math.max(glyphCount, config.getCharacterKey().charAt(i) + 1);
+        }
+        glyphX = new int[glyphCount];
+        glyphY = new int[glyphCount];
+        glyphWidth = new int[glyphCount];
+        glyphHeight = new int[glyphCount];
+        glyphValid = new boolean[glyphCount];
 
         // For fixed width, just put the same sized box for all characters. The
         // only difference is the location on the sprite grid
@@ -195,6 +280,48 @@ public class SpriteFont
             logger.error("Unknown font type: " + config.getFontType());
             break;
         }
+
+        resolveGlyphMetrics();
+    }
+
+    /**
+     * Set the space width and fill in the codepoints that aren't in the character key with the bounds of the unknown
+     * character, so measuring a character is just a lookup. This doesn't need to go back over the sprite image, so it
+     * is cheap enough to redo whenever the space width or unknown character changes.
+     */
+    private void resolveGlyphMetrics()
+    {
+        final String key = config.getCharacterKey();
+        for (int c = 0; c < glyphValid.length; c++)
+        {
+            glyphValid[c] = key.indexOf(c) >= 0;
+        }
+
+        if (FontType.VARIABLE_WIDTH.equals(config.getFontType()) && glyphValid[' '])
+        {
+            glyphWidth[' '] = (int) (sprites.getSprite(config).getSpriteWidth() * (config.getSpaceWidth() / 100.0f));
+        }
+
+        final int unknown = config.getUnknownChar();
+        final boolean unknownValid = unknown < glyphValid.length && glyphValid[unknown];
+        for (int c = 0; c < glyphValid.length; c++)
+        {
+            if (!glyphValid[c])
+            {
+                glyphX[c] = unknownValid ? glyphX[unknown] : 0;
+                glyphY[c] = unknownValid ? glyphY[unknown] : 0;
+                glyphWidth[c] = unknownValid ? glyphWidth[unknown] : 0;
+                glyphHeight[c] = unknownValid ? glyphHeight[unknown] : 0;
+            }
+        }
+    }
+
+    private void setGlyphBounds(int c, int x, int y, int width, int height)
+    {
+        glyphX[c] = x;
+        glyphY[c] = y;
+        glyphWidth[c] = width;
+        glyphHeight[c] = height;
     }
 
     private void calculateFixedCharacterDimensions()
@@ -208,10 +335,7 @@ public class SpriteFont
             final int index = config.getCharacterKey().indexOf(c);
             final int gridX = index % config.getGridWidth();
             final int gridY = index / config.getGridWidth();
-            Rectangle bounds = new Rectangle();
-            bounds.setLocation(gridX * spriteWidth, gridY * spriteHeight);
-            bounds.setSize(spriteWidth, spriteHeight);
-            characterBounds.put((int) c, bounds);
+            setGlyphBounds(c, gridX * spriteWidth, gridY * spriteHeight, spriteWidth, spriteHeight);
         }
     }
 
@@ -221,19 +345,16 @@ public class SpriteFont
     private void calculateVariableCharacterDimensions()
     {
         logger.trace("Calculating character dimensions");
-        characterBounds.clear();
 
         Sprite sprite = sprites.getSprite(config);
 
         final int charWidth = sprite.getSpriteWidth();
         final int charHeight = sprite.getSpriteHeight();
-        final int wholeWidth = sprite.getImage().getWidth();
-        final int wholeHeight = sprite.getImage().getHeight();
+        final int wholeWidth = sprite.getImageWidth();
+        final int wholeHeight = sprite.getImageHeight();
 
         final String key = config.getCharacterKey();
 
-        int[] pixelData = new int[wholeWidth * wholeHeight];
-        pixelData = sprite.getImage().getRGB(0, 0, wholeWidth, wholeHeight, pixelData, 0, wholeWidth);
         int letterIndex = 0;
         // For each grid row
         for (int y = 0; y < wholeHeight; y += charHeight)
@@ -258,7 +379,7 @@ public class SpriteFont
                         // If the alpha component of the pixel RGB integer
                         // is greater than zero, then the pixel counts
                         // towards the width of the character
-                        opaquePixelFound = ((pixelData[absoluteX + absoluteY * wholeWidth] >> 24) & 0xff) > 0;
+                        opaquePixelFound = sprite.getAlpha(absoluteX, absoluteY) > 0;
                     }
 
                     if (opaquePixelFound)
@@ -285,20 +406,18 @@ public class SpriteFont
 
                 final int letterWidth = Math.min(charWidth, rightEdge - leftEdge);
 
-                Rectangle bounds = new Rectangle(x + leftEdge, y, letterWidth, charHeight);
-
                 // If the character is a space and the bounds calculated to be nothing, meaning there were no
                 // opaque pixels found, then make it a default quarter of the sprite width
                 if (!leftEdgeFound)
                 {
                     // Then just use a quarter of the character width
-                    characterBounds.put((int) ckey, new Rectangle(x + charWidth / 4, y, charWidth / 2, charHeight));
+                    setGlyphBounds(ckey, x + charWidth / 4, y, charWidth / 2, charHeight);
                 }
                 // For all other characters, or for spaces that have some non transparent pixels, use the calculated
                 // bounds
                 else
                 {
-                    characterBounds.put((int) ckey, bounds);
+                    setGlyphBounds(ckey, x + leftEdge, y, letterWidth, charHeight);
                 }
 
                 letterIndex++;
@@ -307,25 +426,19 @@ public class SpriteFont
     }
 
     /**
-     * Get the bounding box for the character in the sprite font image (does not use scale at all)
+     * Get the width of the bounding box for the character in the sprite font image (does not use scale at all). A
+     * character not in the character key is the width of the unknown character.
      * 
      * @param c
-     * @return bounding box
+     * @return width
      */
-    public Rectangle getCharacterBounds(int c)
+    public int getGlyphWidth(int c)
     {
-        if (!config.getCharacterKey().contains(new String(Character.toChars(c))))
+        if (c >= glyphWidth.length)
         {
             c = config.getUnknownChar();
         }
-
-        if (FontType.VARIABLE_WIDTH.equals(config.getFontType()) && c == ' ')
-        {
-            Rectangle spaceBounds = characterBounds.get(c);
-            spaceBounds.width = (int) (sprites.getSprite(config).getSpriteWidth() * (config.getSpaceWidth() / 100.0f));
-        }
-
-        return characterBounds.get(c);
+        return c < glyphWidth.length ? glyphWidth[c] : 0;
     }
 
     /**
@@ -334,6 +447,39 @@ public class SpriteFont
     public void updateForConfigChange()
     {
         calculateCharacterDimensions();
+        layoutVersion++;
+    }
+
+    /**
+     * Set the snapshot of the configuration the messages are to be measured and drawn with, then compare the snapshot
+     * against the one from the last time this was called, and if anything that affects where characters are drawn has
+     * changed, increment the layout version so all the layouts stored on messages are recalculated. Only the snapshot
+     * is compared, never the live configuration, because the layouts are calculated from the snapshot's values. Must
+     * be called once before the messages are measured or drawn.
+     * 
+     * @param snapshot
+     */
+    public void checkLayoutVersion(RenderSnapshot snapshot)
+    {
+        this.snapshot = snapshot;
+        if (snapshot.getFontGeneration() != layoutFontGeneration || snapshot.getDisplayStrategy() != layoutDisplayStrategy || snapshot.isAnimationEnabled() != layoutAnimationEnabled)
+        {
+            layoutFontGeneration = snapshot.getFontGeneration();
+            resolveGlyphMetrics();
+            layoutDisplayStrategy = snapshot.getDisplayStrategy();
+            layoutAnimationEnabled = snapshot.isAnimationEnabled();
+            layoutVersion++;
+        }
+    }
+
+    /**
+     * Get the layout version, which changes whenever the layouts stored on messages are no longer valid
+     * 
+     * @return layoutVersion
+     */
+    public int getLayoutVersion()
+    {
+        return layoutVersion;
     }
 
     /**
@@ -343,7 +489,7 @@ public class SpriteFont
      */
     public int getLineHeightScaled()
     {
-        return (int) (getLineHeight() * config.getFontScale());
+        return (int) (getLineHeight() * snapshot.getFontScale());
     }
 
     /**
@@ -353,7 +499,7 @@ public class SpriteFont
      */
     public int getLineHeight()
     {
-        return getFontHeight() + config.getLineSpacing();
+        return getFontHeight() + snapshot.getLineSpacing();
     }
 
     public int getFontHeight()
@@ -409,7 +555,7 @@ public class SpriteFont
      */
     public Dimension getMessageDimensions(Message message, FontMetrics fontMetrics, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager, int lineWrapLength, boolean lastMessage)
     {
-        return drawMessage(null, fontMetrics, message, null, null, messageConfig, emojiConfig, emojiManager, 0, 0, 0, 0, lineWrapLength, false, null, null, lastMessage);
+        return drawMessage(null, fontMetrics, message, null, messageConfig, emojiConfig, emojiManager, 0, 0, 0, 0, lineWrapLength, false, null, null, lastMessage);
     }
 
     /**
@@ -421,8 +567,6 @@ public class SpriteFont
      *            The message to draw
      * @param userColor
      *            The color unique to the sender of the message being drawn
-     * @param colorConfig
-     *            The configuration for how to color messages
      * @param messageConfig
      *            The configuration for how to draw messages
      * @param emojiConfig
@@ -451,196 +595,255 @@ public class SpriteFont
      *            after the message is printed
      * @return The size of the bounding box of the drawn message
      */
-    public Dimension drawMessage(Graphics2D g2d, FontMetrics fontMetrics, Message msg, Color userColor, ConfigColor colorConfig, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager, int x_init, int y_init, int topLimit, int botLimit, int lineWrapLength, boolean debug, Color debugColor, ImageObserver emojiObserver, boolean lastMessage)
+    public Dimension drawMessage(Graphics2D g2d, FontMetrics fontMetrics, Message msg, Color userColor, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager, int x_init, int y_init, int topLimit, int botLimit, int lineWrapLength, boolean debug, Color debugColor, ImageObserver emojiObserver, boolean lastMessage)
     {
-        if (msg.isJoinType() && !messageConfig.showJoinMessages())
+        if (msg.isJoinType() && !snapshot.showJoinMessages())
+        {
+            return new Dimension();
+        }
+
+        MessageLayout layout = getMessageLayout(msg, fontMetrics, messageConfig, emojiConfig, emojiManager, lineWrapLength);
+        if (layout.isUnwrappable())
         {
             return new Dimension();
         }
 
-        SpriteCharacterKey[] text = msg.getText(emojiManager, messageConfig, emojiConfig);
+        if (g2d != null)
+        {
+            SpriteText text = msg.getText(emojiManager, messageConfig, emojiConfig);
+
+            // Because the letters are set back by this amount to divide up the
+            // spacing between their left and right sides
+            final int x = x_init - snapshot.getCharSpacing() / 2;
+            final int y = y_init + lineScrollOffset * layout.getLineHeight();
+
+            // The colors of the parts of the text are worked out once for the message, not for every character
+            final Color timestampColor = getFontColor(msg, TextSpan.TIMESTAMP, userColor);
+            final Color usernameColor = getFontColor(msg, TextSpan.USERNAME, userColor);
+            final Color messageColor = getFontColor(msg, TextSpan.MESSAGE, userColor);
+
+            final int visibleCount = layout.getVisibleCount(msg.getDrawCursor());
+            for (int ci = 0; ci < visibleCount; ci++)
+            {
+                final int charY = y + layout.getGlyphY(ci);
+                if (layout.isGlyphDrawn(ci) && charY >= topLimit && charY < botLimit)
+                {
+                    final TextSpan span = text.getSpan(ci);
+                    final Color color = span == TextSpan.TIMESTAMP ? timestampColor : (span == TextSpan.USERNAME ? usernameColor : messageColor);
+                    drawCharacter(g2d, fontMetrics, text.getKey(ci), x + layout.getGlyphX(ci), charY, color, debug, debugColor, emojiObserver);
+                }
+            }
+        }
+
+        return layout.getDimension(msg.getDrawCursor(), lastMessage);
+    }
+
+    /**
+     * Get the word wrapped layout of the message, reusing the one stored on the message if it was calculated for the
+     * same text, line wrap length, and font configuration
+     * 
+     * @param msg
+     * @param fontMetrics
+     * @param messageConfig
+     * @param emojiConfig
+     * @param emojiManager
+     * @param lineWrapLength
+     * @return layout
+     */
+    public MessageLayout getMessageLayout(Message msg, FontMetrics fontMetrics, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager, int lineWrapLength)
+    {
+        if (extendedGlyphs.setFont(fontMetrics.getFont()))
+        {
+            // The widths of the extended characters depend on the system font they are drawn in
+            layoutVersion++;
+        }
+        SpriteText text = msg.getText(emojiManager, messageConfig, emojiConfig);
+        MessageLayout layout = msg.getLayout();
+        if (layout == null || !layout.isValid(this, text, lineWrapLength, layoutVersion))
+        {
+            layout = calculateMessageLayout(text, fontMetrics, lineWrapLength);
+            msg.setLayout(layout);
+        }
+        return layout;
+    }
 
+    /**
+     * Word wrap the text to determine where each character goes relative to the top left of the message
+     * 
+     * @param text
+     * @param fontMetrics
+     * @param lineWrapLength
+     * @return layout
+     */
+    private MessageLayout calculateMessageLayout(SpriteText text, FontMetrics fontMetrics, int lineWrapLength)
+    {
+        // Measure each character only once
+        int[] charWidths = new int[text.length()];
         int maxCharWidth = 0;
-        for (int c = 0; c < text.length; c++)
+        for (int c = 0; c < text.length(); c++)
         {
-            maxCharWidth = Math.max(maxCharWidth, getCharacterWidth(fontMetrics, text[c], emojiConfig));
+            charWidths[c] = getCharacterWidth(fontMetrics, text, c);
+            maxCharWidth = Math.max(maxCharWidth, charWidths[c]);
         }
         if (maxCharWidth > lineWrapLength)
         {
-            return new Dimension();
+            return new MessageLayout(this, text, lineWrapLength, layoutVersion);
         }
 
-        // Because the letters are set back by this amount to divide up the
-        // spacing between their left and right sides
-        x_init -= config.getCharSpacing() / 2;
+        // For each character that isn't a word break, the width from that character to the end of the word it's in,
+        // filled in from the end of the text so each word is only added up once
+        int[] remainingWordWidths = new int[text.length()];
+        for (int c = text.length() - 1; c >= 0; c--)
+        {
+            if (!isWordBreak(text.getCodepoint(c)))
+            {
+                remainingWordWidths[c] = charWidths[c] + (c + 1 < text.length() ? remainingWordWidths[c + 1] : 0);
+            }
+        }
 
-        int x = x_init;
-        int y = y_init;
+        final int lineHeight = getLineHeightScaled();
 
-        int height = getLineHeightScaled();
+        int[] glyphX = new int[text.length()];
+        int[] glyphY = new int[text.length()];
+        int[] glyphLine = new int[text.length()];
+        boolean[] glyphDrawn = new boolean[text.length()];
+
+        int x = 0;
+        int line = 0;
         int maxWidth = 0;
         int width = 0;
 
-        y += lineScrollOffset * height;
-
         boolean forcedBreak = false;
 
-        Color color = Color.WHITE;
-
         // Go through each character in the text
-        for (int ci = 0; ci < text.length; ci++)
+        for (int ci = 0; ci < text.length(); ci++)
         {
-            if (colorConfig != null)
-            {
-                color = getFontColor(msg, ci, messageConfig, colorConfig, userColor);
-            }
+            final int c = text.getCodepoint(ci);
+            final int charWidth = charWidths[ci];
 
             // If the character is a line return, go to the next line
-            if (LINE_BREAKS.contains(String.valueOf(text[ci].getChar())))
+            if (isLineBreak(c))
             {
-                x = x_init;
+                x = 0;
                 maxWidth = Math.max(maxWidth, width);
                 width = 0;
-                y += getLineHeightScaled();
-                if (ci < msg.getDrawCursor())
-                {
-                    height += getLineHeightScaled();
-                }
+                line++;
             }
             // If it's not a line return, look forward into the text to find if
             // the next word fits
-            else if (WORD_BREAKS.contains(String.valueOf(text[ci].getChar())))
+            else if (isWordBreak(c))
             {
-                int charWidth = getCharacterWidth(fontMetrics, text[ci], emojiConfig);
+                glyphX[ci] = x;
                 x += charWidth;
                 width += charWidth;
                 forcedBreak = false;
             }
             else
             {
-                int currentWordPixelWidth = 0;
-                for (int nwc = 0; nwc < text.length - ci && !WORD_BREAKS.contains(String.valueOf(text[ci + nwc].getChar())); nwc++)
-                {
-                    currentWordPixelWidth += getCharacterWidth(fontMetrics, text[ci + nwc], emojiConfig);
-                }
-                int distanceAlreadyFilled = x - x_init;
+                final int currentWordPixelWidth = remainingWordWidths[ci];
 
-                // The next word fits
-                if (distanceAlreadyFilled + currentWordPixelWidth < lineWrapLength)
-                {
-                    if (g2d != null && y >= topLimit && y < botLimit && ci < msg.getDrawCursor())
-                    {
-                        drawCharacter(g2d, fontMetrics, text[ci], x, y, emojiConfig, color, debug, debugColor, emojiObserver);
-                    }
-                    int charWidth = getCharacterWidth(fontMetrics, text[ci], emojiConfig);
-                    x += charWidth;
-                    width += charWidth;
-                }
-                // The next word doesn't fit, but it doesn't exceed the length
-                // of a full line, so hit return
-                else if (!forcedBreak && currentWordPixelWidth < lineWrapLength)
-                {
-                    x = x_init;
-                    maxWidth = Math.max(maxWidth, width);
-                    width = 0;
-                    y += getLineHeightScaled();
-                    if (ci < msg.getDrawCursor())
-                    {
-                        height += getLineHeightScaled();
-                    }
-                    if (g2d != null && y >= topLimit && y < botLimit && ci < msg.getDrawCursor())
-                    {
-                        drawCharacter(g2d, fontMetrics, text[ci], x, y, emojiConfig, color, debug, debugColor, emojiObserver);
-                    }
-                    int charWidth = getCharacterWidth(fontMetrics, text[ci], emojiConfig);
-                    x += charWidth;
-                    width += charWidth;
-                }
-                // The next word doesn't even fit on its own line, so it needs a
-                // forced break at the end of the line
-                else
+                // If the next word fits, the character just goes after the previous one
+                if (x + currentWordPixelWidth >= lineWrapLength)
                 {
-                    forcedBreak = true;
-                    distanceAlreadyFilled = x - x_init;
-                    final int remainderOfTheLine = lineWrapLength - distanceAlreadyFilled;
-                    int charWidth = getCharacterWidth(fontMetrics, text[ci], emojiConfig);
-                    if (charWidth > remainderOfTheLine)
+                    // The next word doesn't fit, but it doesn't exceed the length
+                    // of a full line, so hit return
+                    if (!forcedBreak && currentWordPixelWidth < lineWrapLength)
                     {
-                        x = x_init;
+                        x = 0;
                         maxWidth = Math.max(maxWidth, width);
                         width = 0;
-                        y += getLineHeightScaled();
-                        if (ci < msg.getDrawCursor())
-                        {
-                            height += getLineHeightScaled();
-                        }
+                        line++;
                     }
-
-                    if (g2d != null && y >= topLimit && y < botLimit && ci < msg.getDrawCursor())
+                    // The next word doesn't even fit on its own line, so it needs a
+                    // forced break at the end of the line
+                    else
                     {
-                        drawCharacter(g2d, fontMetrics, text[ci], x, y, emojiConfig, color, debug, debugColor, emojiObserver);
+                        forcedBreak = true;
+                        if (charWidth > lineWrapLength - x)
+                        {
+                            x = 0;
+                            maxWidth = Math.max(maxWidth, width);
+                            width = 0;
+                            line++;
+                        }
                     }
-                    x += charWidth;
-                    width += charWidth;
                 }
+
+                glyphX[ci] = x;
+                glyphDrawn[ci] = true;
+                x += charWidth;
+                width += charWidth;
             }
+            glyphY[ci] = line * lineHeight;
+            glyphLine[ci] = line;
         }
 
-        if (!lastMessage)
-        {
-            height += config.getMessageSpacing();
-        }
+        return new MessageLayout(this, text, lineWrapLength, layoutVersion, glyphX, charWidths, glyphY, glyphLine, glyphDrawn, line + 1, lineHeight, snapshot.getMessageSpacing(), maxWidth);
+    }
 
-        return new Dimension(maxWidth, height);
+    /**
+     * @param code
+     *            A codepoint, or a negative number for an emoji
+     * @return Whether the code is a character that can be a line break for wrapping
+     */
+    private static boolean isWordBreak(int code)
+    {
+        return code >= 0 && WORD_BREAKS.indexOf(code) >= 0;
+    }
+
+    /**
+     * @param code
+     *            A codepoint, or a negative number for an emoji
+     * @return Whether the code is a character that returns to the start of the next line
+     */
+    private static boolean isLineBreak(int code)
+    {
+        return code >= 0 && LINE_BREAKS.indexOf(code) >= 0;
     }
 
-    private void drawCharacter(Graphics2D g2d, FontMetrics fontMetrics, SpriteCharacterKey sck, int x, int y, ConfigEmoji emojiConfig, Color color, boolean debug, Color debugColor, ImageObserver emojiObserver)
+    private void drawCharacter(Graphics2D g2d, FontMetrics fontMetrics, SpriteCharacterKey sck, int x, int y, Color color, boolean debug, Color debugColor, ImageObserver emojiObserver)
     {
-        final int drawX = x + config.getCharSpacing() / 2;
+        final int drawX = x + snapshot.getCharSpacing() / 2;
         int drawY = y;
 
         if (sck.isChar())
         {
-            final boolean validNormalChar = !sck.isExtended() && characterBounds.containsKey(sck.getCodepoint());
-            final boolean drawUnknownChar = !validNormalChar && !config.isExtendedCharEnabled();
-
-            // If the option to draw the unknown character in place of anything out of range is enabled,
-            // then switch out the SpriteCharacterKey with one given the selected unknown character
-            if (drawUnknownChar)
-            {
-                sck = new SpriteCharacterKey(config.getUnknownChar());
-            }
+            final boolean validNormalChar = !sck.isExtended() && sck.getCodepoint() < glyphValid.length && glyphValid[sck.getCodepoint()];
+            final boolean drawUnknownChar = !validNormalChar && !snapshot.isExtendedCharEnabled();
 
             // Draw either a valid normal ASCII character, or draw the selected unknown replacement character
             if (validNormalChar || drawUnknownChar)
             {
-                Rectangle bounds = characterBounds.get(sck.getCodepoint());
-                sprites.getSprite(config).draw(g2d, drawX, drawY, bounds.width, bounds.height, bounds, config.getFontScale(), color);
-                if (debug)
+                // If the option to draw the unknown character in place of anything out of range is enabled, then use
+                // the bounds of the selected unknown character
+                final int g = validNormalChar ? sck.getCodepoint() : snapshot.getUnknownChar();
+                if (g < glyphValid.length && glyphValid[g])
                 {
-                    g2d.setColor(debugColor);
-                    g2d.drawRect(drawX, drawY, (int) (bounds.width * config.getFontScale()), (int) (bounds.height * config.getFontScale()));
+                    sprites.getSprite(config).draw(g2d, drawX, drawY, glyphWidth[g], glyphHeight[g], glyphX[g], glyphY[g], glyphWidth[g], glyphHeight[g], snapshot.getFontScale(), color);
+                    if (debug)
+                    {
+                        g2d.setColor(debugColor);
+                        g2d.drawRect(drawX, drawY, (int) (glyphWidth[g] * snapshot.getFontScale()), (int) (glyphHeight[g] * snapshot.getFontScale()));
+                    }
                 }
             }
             // The character is invalid, and drawing the unknown char is not selected, so draw the extended characters
             else
             {
-                g2d.setColor(color);
-                g2d.drawString(sck.toString(), drawX, drawY + (fontMetrics.getHeight() - fontMetrics.getDescent()) - config.getBaselineOffset() * config.getFontScale());
+                final int baselineY = Math.round(drawY + (fontMetrics.getHeight() - fontMetrics.getDescent()) - snapshot.getBaselineOffset() * snapshot.getFontScale());
+                extendedGlyphs.draw(g2d, fontMetrics, sck.getCodepoint(), drawX, baselineY, color);
             }
         }
         else
         {
-            int[] eDim = getEmojiDimensions(sck, emojiConfig);
-            // yOffset is to center the emoji on the line
-            int yOffset = (int) (sprites.getSprite(config).getSpriteDrawHeight(config.getFontScale()) / 2 - config.getBaselineOffset() * config.getFontScale()) - (sck.isBadge() ? emojiConfig.getBadgeHeightOffset() : 0);
-            drawY += yOffset - eDim[1] / 2;
-            Image eImage = sck.getEmoji().getImage(emojiConfig.isAnimationEnabled());
+            int[] eDim = getEmojiDimensions(sck);
+            drawY = getEmojiDrawY(sck, y, eDim);
+            Image eImage = sck.getEmoji().getImage(snapshot.isAnimationEnabled());
             if (eImage == null)
             {
                 // If the image is null, then it's not loaded, so do the backup display strategy
                 g2d.setColor(color);
-                switch (emojiConfig.getDisplayStrategy())
+                switch (snapshot.getDisplayStrategy())
                 {
                 case BOX_FILL:
                     g2d.fillRect(drawX, drawY, eDim[0] + 1, eDim[1] + 1);
@@ -649,7 +852,7 @@ public class SpriteFont
                     g2d.drawRect(drawX, drawY, eDim[0], eDim[1]);
                     break;
                 case UNKNOWN:
-                    drawCharacter(g2d, fontMetrics, new SpriteCharacterKey(config.getUnknownChar()), x, y, emojiConfig, color, debug, debugColor, emojiObserver);
+                    drawCharacter(g2d, fontMetrics, SpriteCharacterKey.valueOf(snapshot.getUnknownChar()), x, y, color, debug, debugColor, emojiObserver);
                     break;
                 case SPACE:
                 case NOTHING:
@@ -672,49 +875,134 @@ public class SpriteFont
     }
 
     /**
-     * If the change to the next character requires a change to the color of the text, this method will set the
-     * appropriate color
+     * Get the top of an emoji drawn on the line at the specified y, centered on the line
+     * 
+     * @param sck
+     * @param y
+     * @param eDim
+     * @return drawY
+     */
+    private int getEmojiDrawY(SpriteCharacterKey sck, int y, int[] eDim)
+    {
+        // yOffset is to center the emoji on the line
+        int yOffset = (int) (sprites.getSprite(config).getSpriteDrawHeight(snapshot.getFontScale()) / 2 - snapshot.getBaselineOffset() * snapshot.getFontScale()) - (sck.isBadge() ? snapshot.getBadgeHeightOffset() : 0);
+        return y + yOffset - eDim[1] / 2;
+    }
+
+    /**
+     * Get the box that contains the characters of the message from the first index up to but not including the last
+     * index, where they are drawn by drawMessage with the same x_init and y_init. This is used to repaint only the part
+     * of the chat where characters have just been revealed.
      * 
      * @param msg
-     * @param c
+     * @param layout
+     *            The layout of the message from the last time it was drawn
      * @param messageConfig
-     * @param colorConfig
-     * @param userColor
+     * @param emojiConfig
+     * @param emojiManager
+     * @param x_init
+     * @param y_init
+     * @param fromIndex
+     * @param toIndex
+     * @return bounds, or null if none of the characters are drawn
      */
-    public Color getFontColor(Message msg, int c, ConfigMessage messageConfig, ConfigColor colorConfig, Color userColor)
+    public Rectangle getCharacterDrawBounds(Message msg, MessageLayout layout, ConfigMessage messageConfig, ConfigEmoji emojiConfig, EmojiManager emojiManager, int x_init, int y_init, int fromIndex, int toIndex)
     {
-        boolean timestampIndexEncountered = messageConfig.showTimestamps() && c < msg.getIndexTimestamp(messageConfig);
+        SpriteText text = msg.getText(emojiManager, messageConfig, emojiConfig);
+        final int y = y_init + lineScrollOffset * layout.getLineHeight();
+        // Extended characters and debug boxes can go a little past the width and height they take up in the layout
+        final int margin = Math.max(2, (int) snapshot.getFontScale());
+        // Negative character spacing overlaps each character onto the next one
+        final int overlap = Math.max(0, (int) (-snapshot.getCharSpacing() * snapshot.getFontScale()));
+
+        Rectangle bounds = null;
+        for (int ci = Math.max(0, fromIndex); ci < toIndex && ci < layout.getLength(); ci++)
+        {
+            if (!layout.isGlyphDrawn(ci))
+            {
+                continue;
+            }
+            final int charX = x_init + layout.getGlyphX(ci);
+            final int charY = y + layout.getGlyphY(ci);
+            Rectangle charBounds = new Rectangle(charX - margin, charY - margin, layout.getGlyphWidth(ci) + overlap + margin * 2, layout.getLineHeight() + margin * 2);
+            if (!text.isChar(ci))
+            {
+                SpriteCharacterKey sck = text.getKey(ci);
+                int[] eDim = getEmojiDimensions(sck);
+                charBounds.add(new Rectangle(charX, getEmojiDrawY(sck, charY, eDim), eDim[0] + 2, eDim[1] + 2));
+            }
+            if (bounds == null)
+            {
+                bounds = charBounds;
+            }
+            else
+            {
+                bounds.add(charBounds);
+            }
+        }
+        return bounds;
+    }
 
+    /**
+     * Get the color to draw the specified part of the text of the message in
+     * 
+     * @param msg
+     * @param span
+     * @param userColor
+     * @return color
+     */
+    public Color getFontColor(Message msg, TextSpan span, Color userColor)
+    {
         if (msg.isJoinType())
         {
-            if (timestampIndexEncountered)
+            if (span == TextSpan.TIMESTAMP)
             {
-                return colorConfig.isColorJoin() && colorConfig.isColorTimestamp() ? colorConfig.getHighlight() : colorConfig.getFgColor();
+                return snapshot.isColorJoin() && snapshot.isColorTimestamp() ? snapshot.getHighlight() : snapshot.getFgColor();
             }
             else
             {
-                return colorConfig.isColorJoin() ? colorConfig.getHighlight() : colorConfig.getFgColor();
+                return snapshot.isColorJoin() ? snapshot.getHighlight() : snapshot.getFgColor();
             }
         }
         else
         {
-            if (timestampIndexEncountered)
+            if (span == TextSpan.TIMESTAMP)
             {
-                return colorConfig.isColorTimestamp() ? userColor : colorConfig.getFgColor();
+                return snapshot.isColorTimestamp() ? userColor : snapshot.getFgColor();
             }
-            else if (messageConfig.showUsernames() && c >= msg.getIndexUsername(messageConfig)[0] && c < msg.getIndexUsername(messageConfig)[1])
+            else if (span == TextSpan.USERNAME)
             {
-                return colorConfig.isColorUsername() ? userColor : colorConfig.getFgColor();
+                return snapshot.isColorUsername() ? userColor : snapshot.getFgColor();
             }
-            else if (colorConfig.isColorMessage() || MessageType.ACTION.equals(msg.getType()))
+            else if (snapshot.isColorMessage() || MessageType.ACTION.equals(msg.getType()))
             {
                 return userColor;
             }
             else
             {
-                return colorConfig.getFgColor();
+                return snapshot.getFgColor();
             }
         }
     }
 
+    /**
+     * Get a summary of how often the rasterized extended characters could be reused, to be displayed for debugging
+     * 
+     * @return statistics
+     */
+    public String getExtendedGlyphStatistics()
+    {
+        return extendedGlyphs.getStatistics();
+    }
+
+    /**
+     * Get a summary of how the cache of tinted glyphs of the sprite font image is doing, to be displayed for debugging
+     * 
+     * @return statistics
+     */
+    public String getTintStatistics()
+    {
+        return sprites.getSprite(config).getTintStatistics();
+    }
+
 }
@@ -0,0 +1,192 @@
+package com.glitchcog.fontificator.sprite;
+
+/**
+ * The parsed text of a message, stored compactly as one int per character. A character is stored as its codepoint,
+ * and an emoji or badge is stored as a negative number that references its key in a separate table, so only the
+ * emoji and badges need objects of their own.
+ * 
+ * @author Matt Yanos
+ */
+public class SpriteText
+{
+    /**
+     * The codepoint of each character, or -(index + 1) into the emoji table for each emoji or badge
+     */
+    private int[] codes;
+
+    /**
+     * The number of characters in the text
+     */
+    private int length;
+
+    /**
+     * The keys of the emoji and badges in the text, in the order they appear
+     */
+    private SpriteCharacterKey[] emoji;
+
+    /**
+     * The number of emoji and badges in the text
+     */
+    private int emojiCount;
+
+    /**
+     * The index right after the timestamp, which starts the text, or zero if there is no timestamp
+     */
+    private int timestampEnd;
+
+    /**
+     * The index of the first character of the username
+     */
+    private int usernameStart;
+
+    /**
+     * The index right after the username, the same as usernameStart if there is no username
+     */
+    private int usernameEnd;
+
+    /**
+     * Construct an empty text to append characters and emoji to
+     * 
+     * @param capacity
+     *            The expected number of characters
+     */
+    public SpriteText(int capacity)
+    {
+        this.codes = new int[Math.max(capacity, 1)];
+        this.emoji = new SpriteCharacterKey[0];
+    }
+
+    /**
+     * Append each codepoint of the specified string
+     * 
+     * @param str
+     */
+    public void appendCharacters(String str)
+    {
+        // TODO java 1.8: We could use CharSequence and call codePoints method
+        int i = 0;
+        while (i < str.length())
+        {
+            final int codepoint = str.codePointAt(i);
+            appendCode(codepoint);
+            i += Character.charCount(codepoint);
+        }
+    }
+
+    /**
+     * Append an emoji or badge
+     * 
+     * @param key
+     */
+    public void appendEmoji(SpriteCharacterKey key)
+    {
+        if (emojiCount == emoji.length)
+        {
+            SpriteCharacterKey[] grown = new SpriteCharacterKey[Math.max(4, emoji.length * 2)];
+            System.arraycopy(emoji, 0, grown, 0, emojiCount);
+            emoji = grown;
+        }
+        emoji[emojiCount++] = key;
+        appendCode(-emojiCount);
+    }
+
+    private void appendCode(int code)
+    {
+        if (length == codes.length)
+        {
+            int[] grown = new int[codes.length * 2];
+            System.arraycopy(codes, 0, grown, 0, length);
+            codes = grown;
+        }
+        codes[length++] = code;
+    }
+
+    /**
+     * Mark where the timestamp and username are in the text, so they can be colored differently from the rest of it
+     * without working out where they are for every character drawn
+     * 
+     * @param timestampEnd
+     * @param usernameStart
+     * @param usernameEnd
+     */
+    public void setSpans(int timestampEnd, int usernameStart, int usernameEnd)
+    {
+        this.timestampEnd = timestampEnd;
+        this.usernameStart = usernameStart;
+        this.usernameEnd = usernameEnd;
+    }
+
+    /**
+     * Get which part of the text the character at the specified index is in
+     * 
+     * @param index
+     * @return span
+     */
+    public TextSpan getSpan(int index)
+    {
+        if (index < timestampEnd)
+        {
+            return TextSpan.TIMESTAMP;
+        }
+        else if (index >= usernameStart && index < usernameEnd)
+        {
+            return TextSpan.USERNAME;
+        }
+        return TextSpan.MESSAGE;
+    }
+
+    /**
+     * Get the number of characters, counting each emoji or badge as one
+     * 
+     * @return length
+     */
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * Whether the character at the specified index is a character, not an emoji or badge
+     * 
+     * @param index
+     * @return isChar
+     */
+    public boolean isChar(int index)
+    {
+        return codes[index] >= 0;
+    }
+
+    /**
+     * Get the codepoint of the character at the specified index, or a negative number if it is an emoji or badge
+     * 
+     * @param index
+     * @return codepoint
+     */
+    public int getCodepoint(int index)
+    {
+        return codes[index];
+    }
+
+    /**
+     * Get the key for the character, emoji, or badge at the specified index
+     * 
+     * @param index
+     * @return key
+     */
+    public SpriteCharacterKey getKey(int index)
+    {
+        final int code = codes[index];
+        return code >= 0 ? SpriteCharacterKey.valueOf(code) : emoji[-code - 1];
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++)
+        {
+            sb.append(getKey(i).toString());
+        }
+        return sb.toString();
+    }
+}
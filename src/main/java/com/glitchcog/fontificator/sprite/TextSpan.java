@@ -0,0 +1,11 @@
+package com.glitchcog.fontificator.sprite;
+
+/**
+ * The parts of the text of a message that can each be given their own color
+ *
+ * @author Matt Yanos
+ */
+public enum TextSpan
+{
+    TIMESTAMP, USERNAME, MESSAGE;
+}
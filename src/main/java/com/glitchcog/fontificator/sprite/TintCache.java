@@ -0,0 +1,215 @@
+package com.glitchcog.fontificator.sprite;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A cache of the tinted tiles cut from the image of one sprite, keyed off of the part of the image, the tint color,
+ * and the size the tile is scaled to. Every distinct color drawn needs its own tinted copy of each glyph drawn in it,
+ * so the cache is bounded by a memory budget, throwing away the least recently drawn tiles first when a new one would
+ * go over it.
+ * 
+ * A sprite is only ever drawn by the panel that loaded it, one frame at a time, so the cache needs no locking, and
+ * looking up a tile that's already cached doesn't create anything.
+ *
+ * @author Matt Yanos
+ */
+public class TintCache
+{
+    private static final Logger logger = Logger.getLogger(TintCache.class);
+
+    public static final long DEFAULT_BUDGET_BYTES = 32L * 1024L * 1024L;
+
+    /**
+     * The memory budget of each cache, set from the configuration
+     */
+    private static volatile long budgetBytes = DEFAULT_BUDGET_BYTES;
+
+    /**
+     * The tinted tiles, with the least recently drawn first
+     */
+    private final Map<TintKey, BufferedImage> tints;
+
+    /**
+     * Filled in with whatever tile is being looked up, instead of creating a key for each lookup
+     */
+    private final TintKey probe;
+
+    private long usedBytes;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    public TintCache()
+    {
+        this.tints = new LinkedHashMap<TintKey, BufferedImage>(16, 0.75f, true);
+        this.probe = new TintKey();
+    }
+
+    /**
+     * Get the tinted tile of the part of the sprite image bounded by the specified source box scaled to the specified
+     * size, or null if there isn't one cached
+     *
+     * @param srcX
+     * @param srcY
+     * @param srcWidth
+     * @param srcHeight
+     * @param color
+     * @param drawWidth
+     * @param drawHeight
+     * @return tinted tile
+     */
+    public BufferedImage get(int srcX, int srcY, int srcWidth, int srcHeight, Color color, int drawWidth, int drawHeight)
+    {
+        if (usedBytes > budgetBytes)
+        {
+            // The budget has been made smaller since the last tile was added
+            evictToBudget(0);
+        }
+
+        probe.set(srcX, srcY, srcWidth, srcHeight, color.getRGB(), drawWidth, drawHeight);
+        BufferedImage tint = tints.get(probe);
+        if (tint == null)
+        {
+            missCount++;
+        }
+        else
+        {
+            hitCount++;
+        }
+        return tint;
+    }
+
+    /**
+     * Add a tinted tile, making room for it in the budget if needed. The newest tile is always kept, even if it is bigger
+     * than the whole budget by itself, because it is about to be drawn.
+     *
+     * @param srcX
+     * @param srcY
+     * @param srcWidth
+     * @param srcHeight
+     * @param color
+     * @param drawWidth
+     * @param drawHeight
+     * @param tint
+     */
+    public void put(int srcX, int srcY, int srcWidth, int srcHeight, Color color, int drawWidth, int drawHeight, BufferedImage tint)
+    {
+        TintKey key = new TintKey();
+        key.set(srcX, srcY, srcWidth, srcHeight, color.getRGB(), drawWidth, drawHeight);
+        BufferedImage replaced = tints.put(key, tint);
+        if (replaced != null)
+        {
+            usedBytes -= getBytes(replaced);
+        }
+        usedBytes += getBytes(tint);
+        evictToBudget(1);
+    }
+
+    /**
+     * Set the memory budget of every cache. A cache holding more than a smaller budget throws away tiles the next time
+     * it is drawn from.
+     *
+     * @param bytes
+     */
+    public static void setBudget(long bytes)
+    {
+        budgetBytes = bytes;
+    }
+
+    private void evictToBudget(int keepCount)
+    {
+        Iterator<BufferedImage> iter = tints.values().iterator();
+        while (usedBytes > budgetBytes && tints.size() > keepCount && iter.hasNext())
+        {
+            usedBytes -= getBytes(iter.next());
+            iter.remove();
+            evictionCount++;
+        }
+        logger.trace("Tint cache holding " + tints.size() + " tiles in " + usedBytes + " of " + budgetBytes + " bytes");
+    }
+
+    private static long getBytes(BufferedImage img)
+    {
+        return (long) img.getWidth() * img.getHeight() * img.getColorModel().getPixelSize() / 8L;
+    }
+
+    /**
+     * Get a summary of how the cache is doing, to be displayed for debugging
+     *
+     * @return statistics
+     */
+    public String getStatistics()
+    {
+        return tints.size() + " tiles, " + (usedBytes / 1024L) + " of " + (budgetBytes / 1024L) + " KB, " + hitCount + " hits, " + missCount + " misses, " + evictionCount + " evictions";
+    }
+
+    /**
+     * The source box, color, and size of a tile, compared by value. Only the probe is ever changed, and only before
+     * it's used to look up a tile, so the keys in the map never change.
+     */
+    private static class TintKey
+    {
+        private int srcX;
+
+        private int srcY;
+
+        private int srcWidth;
+
+        private int srcHeight;
+
+        private int rgb;
+
+        private int drawWidth;
+
+        private int drawHeight;
+
+        private int hash;
+
+        private void set(int srcX, int srcY, int srcWidth, int srcHeight, int rgb, int drawWidth, int drawHeight)
+        {
+            this.srcX = srcX;
+            this.srcY = srcY;
+            this.srcWidth = srcWidth;
+            this.srcHeight = srcHeight;
+            this.rgb = rgb;
+            this.drawWidth = drawWidth;
+            this.drawHeight = drawHeight;
+
+            final int prime = 31;
+            int result = srcX;
+            result = prime * result + srcY;
+            result = prime * result + srcWidth;
+            result = prime * result + srcHeight;
+            result = prime * result + rgb;
+            result = prime * result + drawWidth;
+            result = prime * result + drawHeight;
+            this.hash = result;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (obj == null || getClass() != obj.getClass())
+                return false;
+            TintKey other = (TintKey) obj;
+            return srcX == other.srcX && srcY == other.srcY && srcWidth == other.srcWidth && srcHeight == other.srcHeight && rgb == other.rgb && drawWidth == other.drawWidth && drawHeight == other.drawHeight;
+        }
+    }
+}